@@ -0,0 +1,202 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Runs the commands of a script or binary op log (see {@link OpLog})
+ * against a chain, timing each kind of command.
+ *
+ * <p>Unlike the interactive driver, a batch prints nothing per command
+ * except balances and errors, so replaying a long log costs time linear in
+ * its length. Since a script cannot know a block's nonce ahead of time,
+ * mining in a batch waits for the block and appends it. A command that
+ * fails, say an append with an invalid nonce, a submit its sender cannot
+ * afford or a write to a full ledger, is counted as failed and the batch
+ * carries on.
+ */
+public class BatchRunner {
+    private static final int TYPES = OpLog.Type.values().length;
+
+    private final BlockChain chain;
+    private final Mempool pool;
+    private final BlockAssembler assembler;
+    private final PrintStream out;
+    private final long[] counts;
+    private final long[] failures;
+    private final long[] totalNanos;
+    private final long[] maxNanos;
+
+    /**
+     * @param chain the chain to run commands against
+     * @param pool the pool submitted transactions go to
+     * @param assembler the assembler that mines blocks of pending transactions
+     * @param out the stream balances and errors are printed to
+     */
+    public BatchRunner(BlockChain chain, Mempool pool, BlockAssembler assembler,
+            PrintStream out) {
+        this.chain = chain;
+        this.pool = pool;
+        this.assembler = assembler;
+        this.out = out;
+        this.counts = new long[TYPES];
+        this.failures = new long[TYPES];
+        this.totalNanos = new long[TYPES];
+        this.maxNanos = new long[TYPES];
+    }
+
+    /**
+     * Runs a single command and records how long it took.
+     *
+     * @param op the command
+     * @return true iff the command succeeded
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public boolean run(OpLog.Op op) throws NoSuchAlgorithmException {
+        int i = op.type().ordinal();
+        long start = System.nanoTime();
+        boolean ok;
+        try {
+            ok = execute(op);
+        } catch (IllegalArgumentException | IllegalStateException | UncheckedIOException e) {
+            out.printf("Error: %s: %s%n", op.type().name().toLowerCase(), e.getMessage());
+            ok = false;
+        }
+        long elapsed = System.nanoTime() - start;
+        counts[i] += 1;
+        totalNanos[i] += elapsed;
+        maxNanos[i] = Math.max(maxNanos[i], elapsed);
+        if (!ok) {
+            failures[i] += 1;
+        }
+        return ok;
+    }
+
+    private boolean execute(OpLog.Op op) throws NoSuchAlgorithmException {
+        switch (op.type()) {
+            case MINE:
+                chain.append(op.transactions() == null
+                    ? chain.mine(op.amount())
+                    : chain.mine(op.transactions()));
+                return true;
+            case APPEND: {
+                Block blk = op.transactions() == null
+                    ? new Block(chain.getSize(), op.amount(), chain.getHash(), op.value(),
+                        chain.getDifficulty())
+                    : new Block(chain.getSize(), op.transactions(), chain.getHash(), op.value(),
+                        chain.getDifficulty());
+                if (!blk.isValid()) {
+                    return false;
+                }
+                chain.append(blk);
+                return true;
+            }
+            case REMOVE:
+                return chain.removeLast();
+            case SUBMIT:
+                return pool.submit(op.transactions().get(0), op.value());
+            case ASSEMBLE:
+                return assembler.assemble() != null;
+            case CHECK:
+                return chain.isValidBlockChain();
+            case VERIFY:
+                return chain.verify();
+            case AUDIT:
+                return chain.audit();
+            case BALANCE:
+                out.printf("Account %d: %d%n", op.value(), chain.getBalance(op.value()));
+                return true;
+            default:
+                throw new IllegalArgumentException("unknown command: " + op.type());
+        }
+    }
+
+    /**
+     * Runs every command of a script.
+     *
+     * @param in the script
+     * @return the number of commands run
+     * @throws IOException if the script cannot be read or has an invalid line
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public long runScript(BufferedReader in) throws IOException, NoSuchAlgorithmException {
+        long ran = 0;
+        int lineNum = 0;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            lineNum += 1;
+            OpLog.Op op;
+            try {
+                op = OpLog.parse(line);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("line " + lineNum + ": " + e.getMessage(), e);
+            }
+            if (op != null) {
+                run(op);
+                ran += 1;
+            }
+        }
+        return ran;
+    }
+
+    /**
+     * Runs every command of a binary op log.
+     *
+     * @param in the log
+     * @return the number of commands run
+     * @throws IOException if the log cannot be read or has a malformed op
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public long runLog(DataInputStream in) throws IOException, NoSuchAlgorithmException {
+        long ran = 0;
+        for (OpLog.Op op = OpLog.read(in); op != null; op = OpLog.read(in)) {
+            run(op);
+            ran += 1;
+        }
+        return ran;
+    }
+
+    /**
+     * @param type a kind of command
+     * @return the number of commands of that kind run so far
+     */
+    public long getCount(OpLog.Type type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * @param type a kind of command
+     * @return the number of commands of that kind that failed so far
+     */
+    public long getFailures(OpLog.Type type) {
+        return failures[type.ordinal()];
+    }
+
+    /**
+     * @param type a kind of command
+     * @return the total time spent running commands of that kind, in nanoseconds
+     */
+    public long getTotalNanos(OpLog.Type type) {
+        return totalNanos[type.ordinal()];
+    }
+
+    /**
+     * Prints a table of how many commands of each kind were run, how many
+     * failed, and how long they took in total, on average and at most.
+     */
+    public void printTimings() {
+        out.printf("%-9s %9s %7s %11s %11s %11s%n",
+            "command", "count", "failed", "total ms", "mean us", "max us");
+        for (OpLog.Type type : OpLog.Type.values()) {
+            int i = type.ordinal();
+            if (counts[i] > 0) {
+                out.printf("%-9s %9d %7d %11.1f %11.1f %11.1f%n",
+                    type.name().toLowerCase(), counts[i], failures[i], totalNanos[i] / 1e6,
+                    totalNanos[i] / 1e3 / counts[i], maxNanos[i] / 1e3);
+            }
+        }
+    }
+}
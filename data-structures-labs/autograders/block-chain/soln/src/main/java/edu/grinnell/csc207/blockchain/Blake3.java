@@ -0,0 +1,267 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * A pure-Java implementation of the BLAKE3 hash function, in its default
+ * hashing mode with a 256-bit output, as a {@link MessageDigest}.
+ *
+ * <p>BLAKE3 splits its input into 1 KiB chunks, each hashed as a sequence
+ * of 64-byte blocks by a 7-round compression function, and combines the
+ * chunks' chaining values in a binary tree. The tree is built incrementally
+ * on a stack of chaining values, one per level, so hashing takes constant
+ * space. Block headers fit in a single chunk, so mining only ever runs the
+ * compression function over a couple of blocks.
+ *
+ * <p>The compression function's state and message are kept in fields and
+ * reused, so digesting into a caller's array allocates nothing.
+ */
+final class Blake3 extends MessageDigest {
+    /** The number of bytes of output. */
+    static final int DIGEST_LENGTH = 32;
+
+    private static final int BLOCK_LEN = 64;
+    private static final int CHUNK_LEN = 1024;
+    private static final int MAX_DEPTH = 54;
+
+    private static final int CHUNK_START = 1;
+    private static final int CHUNK_END = 2;
+    private static final int PARENT = 4;
+    private static final int ROOT = 8;
+
+    private static final int[] IV = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+        0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19,
+    };
+
+    /** The order the message words are used in by each round, after the first. */
+    private static final int[][] SCHEDULE = new int[7][16];
+
+    static {
+        int[] permutation = {2, 6, 3, 10, 7, 0, 4, 13, 1, 11, 12, 5, 9, 14, 15, 8};
+        for (int i = 0; i < 16; i++) {
+            SCHEDULE[0][i] = i;
+        }
+        for (int r = 1; r < 7; r++) {
+            for (int i = 0; i < 16; i++) {
+                SCHEDULE[r][i] = SCHEDULE[r - 1][permutation[i]];
+            }
+        }
+    }
+
+    // The chunk being hashed.
+    private final int[] cv = new int[8];
+    private final byte[] block = new byte[BLOCK_LEN];
+    private int blockLen;
+    private int blocksCompressed;
+    private long chunkCounter;
+
+    // The chaining values of completed subtrees, one per level.
+    private final int[][] stack = new int[MAX_DEPTH][8];
+    private int stackLen;
+
+    // Scratch space for the compression function and the output.
+    private final int[] words = new int[16];
+    private final int[] state = new int[16];
+    private final int[] out = new int[8];
+
+    Blake3() {
+        super("BLAKE3");
+        engineReset();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    protected void engineReset() {
+        System.arraycopy(IV, 0, cv, 0, 8);
+        blockLen = 0;
+        blocksCompressed = 0;
+        chunkCounter = 0;
+        stackLen = 0;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        engineUpdate(new byte[] {input}, 0, 1);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        int end = offset + len;
+        while (offset < end) {
+            // N.B., a full block is only compressed once more input follows,
+            // since the last block of the input is compressed differently
+            if (blockLen == BLOCK_LEN) {
+                if (blocksCompressed == CHUNK_LEN / BLOCK_LEN - 1) {
+                    finishChunk();
+                } else {
+                    compressBlock(cv, blockFlags());
+                    blocksCompressed += 1;
+                    blockLen = 0;
+                }
+            }
+            int n = Math.min(BLOCK_LEN - blockLen, end - offset);
+            System.arraycopy(input, offset, block, blockLen, n);
+            blockLen += n;
+            offset += n;
+        }
+    }
+
+    /**
+     * Compresses the last block of a full chunk, pushes the chunk's chaining
+     * value onto the stack, merging completed subtrees, and starts the next chunk.
+     */
+    private void finishChunk() {
+        compressBlock(cv, blockFlags() | CHUNK_END);
+        chunkCounter += 1;
+        // N.B., a subtree is complete for each trailing zero bit of the chunk count
+        for (long total = chunkCounter; (total & 1) == 0; total >>>= 1) {
+            stackLen -= 1;
+            parent(stack[stackLen], cv, 0, cv);
+        }
+        System.arraycopy(cv, 0, stack[stackLen], 0, 8);
+        stackLen += 1;
+        System.arraycopy(IV, 0, cv, 0, 8);
+        blocksCompressed = 0;
+        blockLen = 0;
+    }
+
+    private int blockFlags() {
+        return blocksCompressed == 0 ? CHUNK_START : 0;
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        byte[] digest = new byte[DIGEST_LENGTH];
+        finish(digest, 0);
+        return digest;
+    }
+
+    @Override
+    protected int engineDigest(byte[] buf, int offset, int len) throws DigestException {
+        if (len < DIGEST_LENGTH) {
+            throw new DigestException("output buffer too short: " + len);
+        }
+        finish(buf, offset);
+        return DIGEST_LENGTH;
+    }
+
+    /**
+     * Writes the root hash of the input so far and resets the digest.
+     *
+     * @param buf the array to write the hash to
+     * @param offset where in the array to write it
+     */
+    private void finish(byte[] buf, int offset) {
+        if (stackLen == 0) {
+            compressBlock(out, cv, blockFlags() | CHUNK_END | ROOT);
+        } else {
+            compressBlock(out, cv, blockFlags() | CHUNK_END);
+            for (int i = stackLen - 1; i > 0; i--) {
+                parent(stack[i], out, 0, out);
+            }
+            parent(stack[0], out, ROOT, out);
+        }
+        for (int i = 0; i < 8; i++) {
+            putWord(buf, offset + 4 * i, out[i]);
+        }
+        engineReset();
+    }
+
+    /**
+     * Compresses the current block into a chaining value, in place.
+     *
+     * @param chain the chaining value to update
+     * @param flags the domain flags of the block
+     */
+    private void compressBlock(int[] chain, int flags) {
+        compressBlock(chain, chain, flags);
+    }
+
+    /**
+     * Compresses the current block, zero-padded, with the current chunk counter.
+     *
+     * @param dest the array to write the new chaining value to
+     * @param chain the chaining value to start from
+     * @param flags the domain flags of the block
+     */
+    private void compressBlock(int[] dest, int[] chain, int flags) {
+        for (int i = 0; i < 16; i++) {
+            words[i] = 0;
+        }
+        for (int i = 0; i < blockLen; i++) {
+            words[i >>> 2] |= (block[i] & 0xff) << (8 * (i & 3));
+        }
+        compress(dest, chain, chunkCounter, blockLen, flags);
+    }
+
+    /**
+     * Computes the chaining value of a parent node from its children's.
+     *
+     * @param left the left child's chaining value
+     * @param right the right child's chaining value
+     * @param flags extra domain flags, i.e., {@link #ROOT} or 0
+     * @param dest the array to write the parent's chaining value to, which may be right
+     */
+    private void parent(int[] left, int[] right, int flags, int[] dest) {
+        System.arraycopy(left, 0, words, 0, 8);
+        System.arraycopy(right, 0, words, 8, 8);
+        compress(dest, IV, 0, BLOCK_LEN, PARENT | flags);
+    }
+
+    /**
+     * The BLAKE3 compression function, truncated to the chaining value.
+     *
+     * @param dest the array to write the new chaining value to, which may be chain
+     * @param chain the input chaining value
+     * @param counter the chunk counter
+     * @param len the number of bytes of the block
+     * @param flags the domain flags
+     */
+    private void compress(int[] dest, int[] chain, long counter, int len, int flags) {
+        int[] v = state;
+        System.arraycopy(chain, 0, v, 0, 8);
+        System.arraycopy(IV, 0, v, 8, 4);
+        v[12] = (int) counter;
+        v[13] = (int) (counter >>> 32);
+        v[14] = len;
+        v[15] = flags;
+        int[] m = words;
+        for (int[] s : SCHEDULE) {
+            g(v, 0, 4, 8, 12, m[s[0]], m[s[1]]);
+            g(v, 1, 5, 9, 13, m[s[2]], m[s[3]]);
+            g(v, 2, 6, 10, 14, m[s[4]], m[s[5]]);
+            g(v, 3, 7, 11, 15, m[s[6]], m[s[7]]);
+            g(v, 0, 5, 10, 15, m[s[8]], m[s[9]]);
+            g(v, 1, 6, 11, 12, m[s[10]], m[s[11]]);
+            g(v, 2, 7, 8, 13, m[s[12]], m[s[13]]);
+            g(v, 3, 4, 9, 14, m[s[14]], m[s[15]]);
+        }
+        for (int i = 0; i < 8; i++) {
+            dest[i] = v[i] ^ v[i + 8];
+        }
+    }
+
+    private static void g(int[] v, int a, int b, int c, int d, int mx, int my) {
+        v[a] = v[a] + v[b] + mx;
+        v[d] = Integer.rotateRight(v[d] ^ v[a], 16);
+        v[c] = v[c] + v[d];
+        v[b] = Integer.rotateRight(v[b] ^ v[c], 12);
+        v[a] = v[a] + v[b] + my;
+        v[d] = Integer.rotateRight(v[d] ^ v[a], 8);
+        v[c] = v[c] + v[d];
+        v[b] = Integer.rotateRight(v[b] ^ v[c], 7);
+    }
+
+    private static void putWord(byte[] buf, int off, int w) {
+        buf[off] = (byte) w;
+        buf[off + 1] = (byte) (w >>> 8);
+        buf[off + 2] = (byte) (w >>> 16);
+        buf[off + 3] = (byte) (w >>> 24);
+    }
+}
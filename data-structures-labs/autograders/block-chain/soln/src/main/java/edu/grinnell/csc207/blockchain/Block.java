@@ -3,16 +3,31 @@ package edu.grinnell.csc207.blockchain;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 
 /**
  * A single block of a blockchain.
+ *
+ * <p>A block records either a single transaction amount, as in the original
+ * assignment, or a batch of transactions. A batch is committed to by the
+ * root of a {@link MerkleTree} over its transactions, and the hashed header
+ * of the block contains only the root and the total amount of the batch, so
+ * mining costs the same no matter how many transactions a block carries.
+ *
+ * <p>A block's header is hashed with the {@link PowHash} chosen for its
+ * chain, sha-256 unless stated otherwise. Merkle trees are always built
+ * with sha-256, so proofs of a transaction do not depend on the chain.
  */
 public class Block {
     private int num;
     private int amount;
     private Hash prevHash;
+    private List<Transaction> transactions;
+    private Hash merkleRoot;
     private long nonce;
     private Hash hash;
+    private int difficulty;
+    private PowHash algorithm;
 
     private static byte[] intToBytes(int x) {
         return ByteBuffer.allocate(4).putInt(x).array();
@@ -22,32 +37,93 @@ public class Block {
         return ByteBuffer.allocate(8).putLong(x).array();
     }
 
-    private void mine() throws NoSuchAlgorithmException {
+    private static long findNonce(int num, int amount, Hash prevHash, Hash merkleRoot,
+            int difficulty, PowHash algorithm) throws NoSuchAlgorithmException {
+        NonceHasher hasher = NonceHasher.forBlock(num, amount, prevHash, merkleRoot, algorithm);
         long nonce = 0;
         while (true) {
-            Hash candidate = calculateHash(num, amount, prevHash, nonce);
-            if (candidate.isValid()) {
-                this.nonce = nonce;
-                this.hash = candidate;
-                return;
+            hasher.hash(nonce);
+            if (hasher.meetsDifficulty(difficulty)) {
+                return nonce;
             } else {
                 nonce += 1;
             }
         }
     }
 
-    private Hash calculateHash(int num, int amount, Hash prevHash, long nonce)
+    /**
+     * Computes the hash of a block with the given contents.
+     *
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param nonce the candidate nonce
+     * @return the hash of the block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    static Hash calculateHash(int num, int amount, Hash prevHash, long nonce)
             throws NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance("sha-256");
+        return calculateHash(MessageDigest.getInstance("sha-256"), num, amount, prevHash, nonce);
+    }
+
+    /**
+     * Computes the hash of a block with the given contents using a
+     * caller-supplied digest, which is reset afterwards.
+     *
+     * @param md a digest of the block's proof-of-work hash function
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param nonce the candidate nonce
+     * @return the hash of the block
+     */
+    static Hash calculateHash(MessageDigest md, int num, int amount, Hash prevHash, long nonce) {
+        return calculateHash(md, num, amount, prevHash, null, nonce);
+    }
+
+    /**
+     * Computes the hash of a block header using a caller-supplied digest,
+     * which is reset afterwards.
+     *
+     * @param md a digest of the block's proof-of-work hash function
+     * @param num the block number
+     * @param amount the transaction amount, or the total amount of a batch
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param merkleRoot the root of the block's transactions, or null for a single-amount block
+     * @param nonce the candidate nonce
+     * @return the hash of the block
+     */
+    static Hash calculateHash(MessageDigest md, int num, int amount, Hash prevHash,
+            Hash merkleRoot, long nonce) {
         md.update(intToBytes(num));
         md.update(intToBytes(amount));
         if (prevHash != null) {
             md.update(prevHash.getData());
         }
+        if (merkleRoot != null) {
+            md.update(merkleRoot.getData());
+        }
         md.update(longToBytes(nonce));
         return new Hash(md.digest());
     }
 
+    /**
+     * @param transactions a batch of transactions
+     * @return the total amount transferred by the batch
+     * @throws IllegalArgumentException if the total does not fit in an int
+     */
+    static int totalAmount(List<Transaction> transactions) {
+        int total = 0;
+        for (Transaction tx : transactions) {
+            try {
+                total = Math.addExact(total, tx.amount());
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("batch total overflows an int", e);
+            }
+        }
+        return total;
+    }
+
     /**
      * @param num 
      * @param amount
@@ -55,10 +131,9 @@ public class Block {
      * @throws NoSuchAlgorithmException
      */
     public Block(int num, int amount, Hash prevHash) throws NoSuchAlgorithmException {
-        this.num = num;
-        this.amount = amount;
-        this.prevHash = prevHash;
-        mine();
+        this(num, amount, prevHash,
+            findNonce(num, amount, prevHash, null, Hash.DEFAULT_DIFFICULTY, PowHash.SHA_256),
+            Hash.DEFAULT_DIFFICULTY);
     }
 
     /**
@@ -69,11 +144,227 @@ public class Block {
      * @throws NoSuchAlgorithmException
      */
     public Block(int num, int amount, Hash prevHash, long nonce) throws NoSuchAlgorithmException {
+        this(num, amount, prevHash, nonce, Hash.DEFAULT_DIFFICULTY);
+    }
+
+    /**
+     * Creates a block that records the difficulty it was mined at. The
+     * difficulty is not part of the hashed contents of the block; it is
+     * checked against the hash instead.
+     *
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param nonce the nonce
+     * @param difficulty the number of leading zero bits the hash must have
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public Block(int num, int amount, Hash prevHash, long nonce, int difficulty)
+            throws NoSuchAlgorithmException {
+        this(num, amount, prevHash, nonce, difficulty, PowHash.SHA_256);
+    }
+
+    /**
+     * Creates a block whose header is hashed with the given function.
+     *
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param nonce the nonce
+     * @param difficulty the number of leading zero bits the hash must have
+     * @param algorithm the proof-of-work hash function of the block's chain
+     * @throws NoSuchAlgorithmException if the hash function is unavailable
+     */
+    public Block(int num, int amount, Hash prevHash, long nonce, int difficulty,
+            PowHash algorithm) throws NoSuchAlgorithmException {
+        this(num, amount, prevHash, nonce, difficulty,
+            calculateHash(algorithm.newDigest(), num, amount, prevHash, nonce), algorithm);
+    }
+
+    /**
+     * Creates a block carrying a batch of transactions.
+     *
+     * @param num the block number
+     * @param transactions the transactions of the block, of which there must be at least one
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param nonce the nonce
+     * @param difficulty the number of leading zero bits the hash must have
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public Block(int num, List<Transaction> transactions, Hash prevHash, long nonce,
+            int difficulty) throws NoSuchAlgorithmException {
+        this(num, transactions, prevHash, nonce, difficulty, PowHash.SHA_256);
+    }
+
+    /**
+     * Creates a block carrying a batch of transactions whose header is
+     * hashed with the given function.
+     *
+     * @param num the block number
+     * @param transactions the transactions of the block, of which there must be at least one
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param nonce the nonce
+     * @param difficulty the number of leading zero bits the hash must have
+     * @param algorithm the proof-of-work hash function of the block's chain
+     * @throws NoSuchAlgorithmException if sha-256 or the hash function is unavailable
+     */
+    public Block(int num, List<Transaction> transactions, Hash prevHash, long nonce,
+            int difficulty, PowHash algorithm) throws NoSuchAlgorithmException {
+        this(num, List.copyOf(transactions),
+            new MerkleTree(transactions).getRoot(), prevHash, nonce, difficulty, algorithm);
+    }
+
+    private Block(int num, List<Transaction> transactions, Hash merkleRoot, Hash prevHash,
+            long nonce, int difficulty, PowHash algorithm) throws NoSuchAlgorithmException {
+        this(num, transactions, merkleRoot, prevHash, nonce, difficulty,
+            calculateHash(algorithm.newDigest(), num, totalAmount(transactions),
+                prevHash, merkleRoot, nonce), algorithm);
+    }
+
+    /**
+     * Creates a block carrying a batch of transactions from previously
+     * computed contents without hashing it.
+     *
+     * @param num the block number
+     * @param transactions the transactions of the block
+     * @param merkleRoot the recorded root of the block's transactions
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param nonce the nonce
+     * @param difficulty the number of leading zero bits the hash must have
+     * @param hash the recorded hash of the block
+     */
+    Block(int num, List<Transaction> transactions, Hash merkleRoot, Hash prevHash, long nonce,
+            int difficulty, Hash hash) {
+        this(num, transactions, merkleRoot, prevHash, nonce, difficulty, hash, PowHash.SHA_256);
+    }
+
+    /**
+     * Creates a block carrying a batch of transactions from previously
+     * computed contents without hashing it.
+     *
+     * @param num the block number
+     * @param transactions the transactions of the block
+     * @param merkleRoot the recorded root of the block's transactions
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param nonce the nonce
+     * @param difficulty the number of leading zero bits the hash must have
+     * @param hash the recorded hash of the block
+     * @param algorithm the proof-of-work hash function of the block's chain
+     */
+    Block(int num, List<Transaction> transactions, Hash merkleRoot, Hash prevHash, long nonce,
+            int difficulty, Hash hash, PowHash algorithm) {
+        this(num, totalAmount(transactions), prevHash, nonce, difficulty, hash, algorithm);
+        this.transactions = List.copyOf(transactions);
+        this.merkleRoot = merkleRoot;
+    }
+
+    /**
+     * Creates a block from previously computed contents without hashing it,
+     * e.g., when loading a chain. The stored hash is trusted until the block
+     * is checked with {@link #hashMatches(MessageDigest)}.
+     *
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param nonce the nonce
+     * @param difficulty the number of leading zero bits the hash must have
+     * @param hash the recorded hash of the block
+     */
+    Block(int num, int amount, Hash prevHash, long nonce, int difficulty, Hash hash) {
+        this(num, amount, prevHash, nonce, difficulty, hash, PowHash.SHA_256);
+    }
+
+    /**
+     * Creates a block from previously computed contents without hashing it.
+     *
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param nonce the nonce
+     * @param difficulty the number of leading zero bits the hash must have
+     * @param hash the recorded hash of the block
+     * @param algorithm the proof-of-work hash function of the block's chain
+     */
+    Block(int num, int amount, Hash prevHash, long nonce, int difficulty, Hash hash,
+            PowHash algorithm) {
+        this.algorithm = algorithm;
         this.num = num;
         this.amount = amount;
         this.prevHash = prevHash;
         this.nonce = nonce;
-        this.hash = calculateHash(num, amount, prevHash, nonce);
+        this.difficulty = difficulty;
+        this.hash = hash;
+    }
+
+    /**
+     * Mines a block at the given difficulty, searching nonces in increasing
+     * order starting at zero.
+     *
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param difficulty the number of leading zero bits the hash must have
+     * @return the mined block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public static Block mine(int num, int amount, Hash prevHash, int difficulty)
+            throws NoSuchAlgorithmException {
+        return mine(num, amount, prevHash, difficulty, PowHash.SHA_256);
+    }
+
+    /**
+     * Mines a block whose header is hashed with the given function,
+     * searching nonces in increasing order starting at zero.
+     *
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param difficulty the number of leading zero bits the hash must have
+     * @param algorithm the proof-of-work hash function of the block's chain
+     * @return the mined block
+     * @throws NoSuchAlgorithmException if the hash function is unavailable
+     */
+    public static Block mine(int num, int amount, Hash prevHash, int difficulty,
+            PowHash algorithm) throws NoSuchAlgorithmException {
+        long nonce = findNonce(num, amount, prevHash, null, difficulty, algorithm);
+        return new Block(num, amount, prevHash, nonce, difficulty, algorithm);
+    }
+
+    /**
+     * Mines a block carrying a batch of transactions at the given
+     * difficulty, searching nonces in increasing order starting at zero.
+     *
+     * @param num the block number
+     * @param transactions the transactions of the block, of which there must be at least one
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param difficulty the number of leading zero bits the hash must have
+     * @return the mined block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public static Block mine(int num, List<Transaction> transactions, Hash prevHash,
+            int difficulty) throws NoSuchAlgorithmException {
+        return mine(num, transactions, prevHash, difficulty, PowHash.SHA_256);
+    }
+
+    /**
+     * Mines a block carrying a batch of transactions whose header is hashed
+     * with the given function, searching nonces in increasing order starting
+     * at zero.
+     *
+     * @param num the block number
+     * @param transactions the transactions of the block, of which there must be at least one
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param difficulty the number of leading zero bits the hash must have
+     * @param algorithm the proof-of-work hash function of the block's chain
+     * @return the mined block
+     * @throws NoSuchAlgorithmException if sha-256 or the hash function is unavailable
+     */
+    public static Block mine(int num, List<Transaction> transactions, Hash prevHash,
+            int difficulty, PowHash algorithm) throws NoSuchAlgorithmException {
+        List<Transaction> txs = List.copyOf(transactions);
+        Hash root = new MerkleTree(txs).getRoot();
+        long nonce = findNonce(num, totalAmount(txs), prevHash, root, difficulty, algorithm);
+        return new Block(num, txs, root, prevHash, nonce, difficulty, algorithm);
     }
 
     /**
@@ -84,12 +375,44 @@ public class Block {
     }
 
     /**
-     * @return the transaction amount
+     * @return the transaction amount, or the total amount transferred by a batch
      */
     public int getAmount() {
         return amount;
     }
 
+    /**
+     * @return the transactions of this block; a single-amount block has exactly one
+     */
+    public List<Transaction> getTransactions() {
+        return transactions == null ? List.of(new Transaction(amount)) : transactions;
+    }
+
+    /**
+     * @return the root of this block's transactions, or null if this is a single-amount block
+     */
+    public Hash getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    /**
+     * Builds a proof that one of this block's transactions is committed to
+     * by its Merkle root. Building the proof rehashes the whole batch, but
+     * checking it with {@link MerkleTree.Proof#verifies(Transaction, Hash)}
+     * against {@link #getMerkleRoot()} takes only O(log n) hashes.
+     *
+     * @param index the index of a transaction of this block
+     * @return a proof of inclusion for that transaction
+     * @throws IllegalStateException if this is a single-amount block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public MerkleTree.Proof prove(int index) throws NoSuchAlgorithmException {
+        if (merkleRoot == null) {
+            throw new IllegalStateException("block " + num + " has no Merkle root");
+        }
+        return new MerkleTree(transactions).prove(index);
+    }
+
     /**
      * @return the nonce
      */
@@ -111,9 +434,64 @@ public class Block {
         return hash;
     }
 
+    /**
+     * @return the number of leading zero bits this block's hash must have
+     */
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * @return the hash function this block's header is hashed with
+     */
+    public PowHash getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return true iff this block's hash meets its recorded difficulty
+     */
+    public boolean isValid() {
+        return hash.meetsDifficulty(difficulty);
+    }
+
+    /**
+     * @param md a digest of this block's proof-of-work hash function to
+     *     recompute the hash with
+     * @return true iff recomputing this block's hash gives its recorded hash
+     */
+    boolean hashMatches(MessageDigest md) {
+        if (merkleRoot != null && (transactions.isEmpty()
+                || !merkleTree(md).getRoot().equals(merkleRoot))) {
+            return false;
+        }
+        return calculateHash(md, num, amount, prevHash, merkleRoot, nonce).equals(hash);
+    }
+
+    /**
+     * @param md a digest of this block's proof-of-work hash function
+     * @return the Merkle tree over this block's transactions
+     */
+    private MerkleTree merkleTree(MessageDigest md) {
+        if (algorithm == PowHash.SHA_256) {
+            return new MerkleTree(md, transactions);
+        }
+        try {
+            return new MerkleTree(transactions);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public String toString() {
         StringBuffer buf = new StringBuffer();
+        if (merkleRoot != null) {
+            buf.append(String.format(
+                "Block %d (Amount: %d, Transactions: %d, Nonce: %d, prevHash: %s, hash: %s)",
+                num, amount, transactions.size(), nonce, prevHash, hash));
+            return buf.toString();
+        }
         buf.append(String.format(
             "Block %d (Amount: %d, Nonce: %d, prevHash: %s, hash: %s)",
             num, amount, nonce, prevHash, hash));
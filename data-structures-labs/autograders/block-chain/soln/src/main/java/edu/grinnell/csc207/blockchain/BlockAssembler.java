@@ -0,0 +1,52 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Assembles blocks for a chain out of the highest-priority transactions
+ * of a {@link Mempool}.
+ */
+public class BlockAssembler {
+    private final BlockChain chain;
+    private final Mempool pool;
+    private final int maxTransactions;
+
+    /**
+     * @param chain the chain to append blocks to
+     * @param pool the pool to take transactions from
+     * @param maxTransactions the largest number of transactions to put in a block
+     */
+    public BlockAssembler(BlockChain chain, Mempool pool, int maxTransactions) {
+        if (maxTransactions < 1) {
+            throw new IllegalArgumentException(
+                "maxTransactions must be positive: " + maxTransactions);
+        }
+        this.chain = chain;
+        this.pool = pool;
+        this.maxTransactions = maxTransactions;
+    }
+
+    /**
+     * Drains the top transactions of the pool into a block, mines it and
+     * appends it to the chain. If mining or appending fails, the drained
+     * transactions are released from the pool before the failure propagates.
+     *
+     * @return the appended block, or null if the pool was empty
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public Block assemble() throws NoSuchAlgorithmException {
+        List<Transaction> txs = pool.drain(maxTransactions);
+        if (txs.isEmpty()) {
+            return null;
+        }
+        try {
+            Block blk = chain.mine(txs);
+            pool.append(blk);
+            return blk;
+        } catch (RuntimeException | NoSuchAlgorithmException e) {
+            pool.release(txs);
+            throw e;
+        }
+    }
+}
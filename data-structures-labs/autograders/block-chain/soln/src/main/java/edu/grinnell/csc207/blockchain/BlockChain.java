@@ -1,58 +1,678 @@
 package edu.grinnell.csc207.blockchain;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * A linked list of hash-consistent blocks representing a ledger of
+ * A sequence of hash-consistent blocks representing a ledger of
  * monetary transactions.
+ *
+ * <p>The blocks are kept in a growable array indexed by block number, so
+ * looking up a block, removing the last block and computing the size of the
+ * chain all take constant time.
+ *
+ * <p>The chain keeps the balance of every account as of its last block in
+ * a {@link LongLongMap}. Appending a block applies its transactions to the
+ * balances and removing a block undoes them, so either takes time
+ * proportional to the block's own transactions rather than replaying the
+ * chain. {@link #audit()} replays the whole chain to cross-check this
+ * incremental state.
+ *
+ * <p>The blocks are also indexed by hash, so a block can be fetched by its
+ * hash in expected constant time.
+ *
+ * <p>A chain may be backed by a {@link BlockStore}, in which case every
+ * append and removal is also recorded in its ledger file.
+ *
+ * <p>A chain can take a {@link Checkpoint} of its state every so many blocks.
+ * A chain reopened from a ledger along with a trusted checkpoint starts
+ * from the checkpoint's balances and verifies only the blocks after it,
+ * leaving the history before it to be verified in the background.
+ *
+ * <p>Every block of a chain is hashed with the chain's {@link PowHash},
+ * sha-256 unless one is chosen when the chain is started. A chain backed by
+ * a ledger uses the hash function recorded in the ledger.
  */
 public class BlockChain {
-    private static class Node {
-        public Block data;
-        public Node next;
+    /**
+     * Credits the transactions of the first block of a chain, which mints
+     * money rather than transferring it.
+     *
+     * @param balances the balances to update
+     * @param genesis the first block of a chain
+     */
+    private static void mint(LongLongMap balances, Block genesis) {
+        if (genesis.getMerkleRoot() == null) {
+            balances.add(Transaction.ALICE, genesis.getAmount());
+        } else {
+            for (Transaction tx : genesis.getTransactions()) {
+                balances.add(tx.receiver(), tx.amount());
+            }
+        }
+    }
+
+    /**
+     * Applies the transactions of a block, in order, to the balances.
+     *
+     * @param balances the balances to update
+     * @param blk a block
+     * @return true iff no transaction of the block overdraws its sender
+     */
+    private static boolean apply(LongLongMap balances, Block blk) {
+        boolean valid = true;
+        for (Transaction tx : blk.getTransactions()) {
+            if (balances.add(tx.sender(), -tx.amount()) < 0) {
+                valid = false;
+            }
+            balances.add(tx.receiver(), tx.amount());
+        }
+        return valid;
+    }
 
-        public Node (Block data) {
-            this.data = data;
-            this.next = null;
+    /**
+     * Undoes the transactions of a block, in reverse order.
+     *
+     * @param balances the balances to update
+     * @param blk the last block applied to the balances
+     */
+    private static void unapply(LongLongMap balances, Block blk) {
+        List<Transaction> txs = blk.getTransactions();
+        for (int i = txs.size() - 1; i >= 0; i--) {
+            Transaction tx = txs.get(i);
+            balances.add(tx.receiver(), -tx.amount());
+            balances.add(tx.sender(), tx.amount());
         }
     }
 
-    private Node first;
-    private Node last;
+    /**
+     * The difficulty the block after a block must meet and the retargeter's
+     * observations as of when the block was appended, restored when the
+     * blocks after it are removed.
+     *
+     * @param difficulty the difficulty of the next block
+     * @param window the retargeter's observations
+     */
+    private record Target(int difficulty, Retargeter.Window window) { }
+
+    private ArrayList<Block> blocks;
+    private ArrayList<Target> targets;
+    private LongLongMap balances;
+    private HashMap<Hash, Block> byHash;
+    private int firstInvalid;
+    private ParallelMiner miner;
+    private PowHash algorithm;
+    private Retargeter retargeter;
+    private int difficulty;
+    private BlockStore store;
+    private int checkpointInterval;
+    private Checkpoint checkpoint;
+    private CompletableFuture<Boolean> history;
     public int totalCash;
 
     public BlockChain(int initial) throws NoSuchAlgorithmException {
-        totalCash = initial;
-        first = new Node(new Block(0, initial, null));
-        last  = first;
+        this(initial, null, Retargeter.fixed(Hash.DEFAULT_DIFFICULTY));
+    }
+
+    /**
+     * @param initial the amount Alice starts with
+     * @param miner the miner used to mine blocks for this chain
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public BlockChain(int initial, ParallelMiner miner) throws NoSuchAlgorithmException {
+        this(initial, miner, Retargeter.fixed(Hash.DEFAULT_DIFFICULTY));
+    }
+
+    /**
+     * @param initial the amount Alice starts with
+     * @param miner the miner used to mine blocks for this chain, or null to mine serially
+     * @param retargeter the policy choosing the difficulty of each new block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public BlockChain(int initial, ParallelMiner miner, Retargeter retargeter)
+            throws NoSuchAlgorithmException {
+        this(initial, miner, retargeter,
+            miner == null ? PowHash.SHA_256 : miner.getAlgorithm());
+    }
+
+    /**
+     * @param initial the amount Alice starts with
+     * @param miner the miner used to mine blocks for this chain, or null to mine serially
+     * @param retargeter the policy choosing the difficulty of each new block
+     * @param algorithm the hash function blocks of this chain are hashed with
+     * @throws NoSuchAlgorithmException if sha-256 or the hash function is unavailable
+     * @throws IllegalArgumentException if the miner mines with another hash function
+     */
+    public BlockChain(int initial, ParallelMiner miner, Retargeter retargeter,
+            PowHash algorithm) throws NoSuchAlgorithmException {
+        this(initial, null, miner, retargeter, algorithm);
+    }
+
+    /**
+     * Starts a chain whose first block mints money into the given accounts
+     * rather than paying it all to Alice. Only transfers between Alice and
+     * Bob need no signature, so this is how accounts belonging to key pairs
+     * come to hold money.
+     *
+     * @param allocations transactions whose receivers are credited with
+     *     their amounts, of which there must be at least one
+     * @param miner the miner used to mine blocks for this chain, or null to mine serially
+     * @param retargeter the policy choosing the difficulty of each new block
+     * @throws NoSuchAlgorithmException if sha-256 or the miner's hash function is unavailable
+     */
+    public BlockChain(List<Transaction> allocations, ParallelMiner miner, Retargeter retargeter)
+            throws NoSuchAlgorithmException {
+        this(0, allocations, miner, retargeter,
+            miner == null ? PowHash.SHA_256 : miner.getAlgorithm());
+    }
+
+    private BlockChain(int initial, List<Transaction> allocations, ParallelMiner miner,
+            Retargeter retargeter, PowHash algorithm) throws NoSuchAlgorithmException {
+        this.miner = miner;
+        this.algorithm = checkAlgorithm(miner, algorithm);
+        this.retargeter = retargeter;
+        this.difficulty = retargeter.getInitialDifficulty();
+        blocks = new ArrayList<>();
+        targets = new ArrayList<>();
+        balances = new LongLongMap();
+        byHash = new HashMap<>();
+        firstInvalid = -1;
+        history = CompletableFuture.completedFuture(true);
+        Block genesis = mineGenesis(initial, allocations);
+        add(genesis);
+        mint(balances, genesis);
+        retarget(difficulty);
+    }
+
+    /**
+     * Opens a chain recorded in a ledger, or starts one in an empty ledger by
+     * mining its first block. The index and balances are rebuilt from the
+     * ledger without mining; only blocks not marked as verified in the
+     * ledger have their hashes recomputed.
+     *
+     * @param initial the amount Alice starts with if the ledger is empty
+     * @param miner the miner used to mine blocks for this chain, or null to mine serially
+     * @param retargeter the policy choosing the difficulty of each new block
+     * @param store the ledger backing this chain
+     * @throws NoSuchAlgorithmException if sha-256 or the ledger's hash function is unavailable
+     * @throws IOException if the ledger is inconsistent or cannot be written
+     * @throws IllegalArgumentException if the miner mines with another hash
+     *     function than the ledger's
+     */
+    public BlockChain(int initial, ParallelMiner miner, Retargeter retargeter, BlockStore store)
+            throws NoSuchAlgorithmException, IOException {
+        this(initial, null, miner, retargeter, store);
+    }
+
+    /**
+     * Opens a chain recorded in a ledger, or starts one in an empty ledger by
+     * mining a first block that mints money into the given accounts.
+     *
+     * @param allocations transactions whose receivers are credited with
+     *     their amounts if the ledger is empty, of which there must be at least one
+     * @param miner the miner used to mine blocks for this chain, or null to mine serially
+     * @param retargeter the policy choosing the difficulty of each new block
+     * @param store the ledger backing this chain
+     * @throws NoSuchAlgorithmException if sha-256 or the ledger's hash function is unavailable
+     * @throws IOException if the ledger is inconsistent or cannot be written
+     * @throws IllegalArgumentException if the miner mines with another hash
+     *     function than the ledger's
+     */
+    public BlockChain(List<Transaction> allocations, ParallelMiner miner, Retargeter retargeter,
+            BlockStore store) throws NoSuchAlgorithmException, IOException {
+        this(0, allocations, miner, retargeter, store);
+    }
+
+    private BlockChain(int initial, List<Transaction> allocations, ParallelMiner miner,
+            Retargeter retargeter, BlockStore store)
+            throws NoSuchAlgorithmException, IOException {
+        this.miner = miner;
+        this.algorithm = checkAlgorithm(miner, store.getAlgorithm());
+        this.retargeter = retargeter;
+        this.difficulty = retargeter.getInitialDifficulty();
+        this.store = store;
+        blocks = new ArrayList<>();
+        targets = new ArrayList<>();
+        balances = new LongLongMap();
+        byHash = new HashMap<>();
+        firstInvalid = -1;
+        history = CompletableFuture.completedFuture(true);
+        if (store.getBlocks().isEmpty()) {
+            Block genesis = mineGenesis(initial, allocations);
+            store.append(genesis, true);
+            add(genesis);
+            mint(balances, genesis);
+            retarget(difficulty);
+            return;
+        }
+        load(null);
+    }
+
+    /**
+     * Opens a chain recorded in a ledger, starting from a trusted checkpoint
+     * of it. The blocks up to the checkpoint are indexed but neither rehashed
+     * nor replayed; the balances are taken from the checkpoint and only the
+     * blocks after it are checked and applied. The history up to the
+     * checkpoint is verified in the background (see
+     * {@link #getHistoryVerification()}).
+     *
+     * @param miner the miner used to mine blocks for this chain, or null to mine serially
+     * @param retargeter the policy choosing the difficulty of each new block
+     * @param store the ledger backing this chain
+     * @param trusted a checkpoint of the chain recorded in the ledger, such
+     *     as one read with {@link Checkpoint#read(java.nio.file.Path, Hash)}
+     * @throws NoSuchAlgorithmException if sha-256 or the ledger's hash function is unavailable
+     * @throws IOException if the ledger is inconsistent, disagrees with the
+     *     checkpoint or cannot be written
+     * @throws IllegalArgumentException if the miner mines with another hash
+     *     function than the ledger's
+     */
+    public BlockChain(ParallelMiner miner, Retargeter retargeter, BlockStore store,
+            Checkpoint trusted) throws NoSuchAlgorithmException, IOException {
+        this.miner = miner;
+        this.algorithm = checkAlgorithm(miner, store.getAlgorithm());
+        this.retargeter = retargeter;
+        this.difficulty = retargeter.getInitialDifficulty();
+        this.store = store;
+        blocks = new ArrayList<>();
+        targets = new ArrayList<>();
+        byHash = new HashMap<>();
+        load(trusted);
+        // N.B., copy the history so appends cannot race with its verification
+        List<Block> prefix = new ArrayList<>(blocks.subList(0, trusted.getHeight() + 1));
+        history = CompletableFuture.supplyAsync(() -> verifyHistory(prefix, trusted));
+    }
+
+    private static PowHash checkAlgorithm(ParallelMiner miner, PowHash algorithm) {
+        if (miner != null && miner.getAlgorithm() != algorithm) {
+            throw new IllegalArgumentException(String.format(
+                "miner hashes with %s, not %s", miner.getAlgorithm(), algorithm));
+        }
+        return algorithm;
+    }
+
+    /**
+     * Rebuilds the index and balances from the blocks of the ledger. Only
+     * blocks not marked as verified in the ledger have their hashes
+     * recomputed.
+     *
+     * @param trusted a checkpoint whose blocks are taken on trust, or null
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     * @throws IOException if the ledger is inconsistent or disagrees with the checkpoint
+     */
+    private void load(Checkpoint trusted) throws NoSuchAlgorithmException, IOException {
+        List<BlockStore.StoredBlock> records = store.getBlocks();
+        int height = trusted == null ? -1 : trusted.getHeight();
+        if (height >= records.size()
+                || height >= 0 && !records.get(height).block().getHash().equals(trusted.getTip())) {
+            throw new IOException("ledger does not contain checkpoint " + trusted);
+        }
+        if (trusted == null) {
+            balances = new LongLongMap();
+            firstInvalid = -1;
+        } else {
+            balances = trusted.getBalances();
+            firstInvalid = trusted.getFirstInvalid();
+        }
+        MessageDigest md = algorithm.newDigest();
+        Retargeter.Window window = retargeter.save();
+        for (BlockStore.StoredBlock stored : records) {
+            Block blk = stored.block();
+            Hash expected = blocks.isEmpty() ? null : getHash();
+            boolean linked = blk.getNum() == blocks.size() && (expected == null
+                ? blk.getPrevHash() == null : expected.equals(blk.getPrevHash()));
+            int least = blocks.isEmpty() ? retargeter.getMinDifficulty()
+                : retargeter.minNextDifficulty(last().getDifficulty());
+            if (!linked || blk.getDifficulty() < least
+                    || blk.getNum() > height && !stored.verified()
+                    && !(blk.isValid() && blk.hashMatches(md))) {
+                throw new IOException("corrupt ledger at block " + blk.getNum());
+            }
+            if (blocks.isEmpty()) {
+                totalCash = blk.getAmount();
+            }
+            if (blk.getNum() <= height) {
+                add(blk);
+            } else if (blocks.isEmpty()) {
+                add(blk);
+                mint(balances, blk);
+            } else {
+                push(blk);
+            }
+            targets.add(new Target(retargeter.nextDifficulty(blk.getDifficulty()), window));
+        }
+        verifySignatures(Math.max(height + 1, 1));
+        difficulty = targets.get(targets.size() - 1).difficulty();
+    }
+
+    /**
+     * Checks that every transaction of the blocks loaded from the ledger
+     * was authorized by its sender, in one parallel batch, as append would
+     * have: the ledger is not trusted to hold only blocks that were.
+     *
+     * @param from the number of the first block to check
+     * @throws NoSuchAlgorithmException if sha-256 or Ed25519 is unavailable
+     * @throws IOException if a block has a transaction not authorized by its sender
+     */
+    private void verifySignatures(int from) throws NoSuchAlgorithmException, IOException {
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = from; i < blocks.size(); i++) {
+            txs.addAll(blocks.get(i).getTransactions());
+        }
+        int bad = new SignatureVerifier().findUnauthorized(txs);
+        if (bad >= 0) {
+            int num = from;
+            int end = blocks.get(num).getTransactions().size();
+            while (end <= bad) {
+                num += 1;
+                end += blocks.get(num).getTransactions().size();
+            }
+            throw new IOException(String.format(
+                "ledger block %d has a transaction not authorized by its sender", num));
+        }
+    }
+
+    /**
+     * Verifies the history of a chain synced from a checkpoint: the blocks
+     * must verify and replaying them must reproduce the checkpoint.
+     *
+     * @param prefix the blocks up to and including the checkpoint
+     * @param trusted the checkpoint
+     * @return true iff the history verifies and agrees with the checkpoint
+     */
+    private boolean verifyHistory(List<Block> prefix, Checkpoint trusted) {
+        try {
+            if (!new ChainVerifier(retargeter.getMinDifficulty()).verify(prefix)
+                    || !meetsRetargetedDifficulty(prefix)) {
+                return false;
+            }
+            LongLongMap replay = new LongLongMap();
+            mint(replay, prefix.get(0));
+            int invalid = -1;
+            for (int i = 1; i < prefix.size(); i++) {
+                if (!apply(replay, prefix.get(i)) && invalid < 0) {
+                    invalid = i;
+                }
+            }
+            Checkpoint replayed =
+                new Checkpoint(trusted.getHeight(), trusted.getTip(), invalid, replay);
+            return replayed.equals(trusted);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return a future completed with true iff the blocks before the
+     *     checkpoint this chain was synced from verify and reproduce the
+     *     checkpoint; already completed with true if the chain was not
+     *     synced from a checkpoint
+     */
+    public CompletableFuture<Boolean> getHistoryVerification() {
+        return history;
+    }
+
+    /**
+     * Has this chain take a checkpoint whenever a block whose number is a
+     * multiple of the interval is appended.
+     *
+     * @param interval the number of blocks between checkpoints, or 0 for none
+     */
+    public void setCheckpointInterval(int interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("negative checkpoint interval: " + interval);
+        }
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * @return the latest checkpoint taken by this chain, or null if there is none
+     */
+    public Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Takes a checkpoint of the current state of this chain.
+     *
+     * @return the checkpoint
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public Checkpoint checkpoint() throws NoSuchAlgorithmException {
+        checkpoint = new Checkpoint(last().getNum(), getHash(), firstInvalid, balances);
+        return checkpoint;
+    }
+
+    private Block last() {
+        return blocks.get(blocks.size() - 1);
+    }
+
+    private Block mineBlock(int num, int amount, Hash prevHash) throws NoSuchAlgorithmException {
+        long start = System.nanoTime();
+        Block blk = miner == null
+            ? Block.mine(num, amount, prevHash, difficulty, algorithm)
+            : miner.mine(num, amount, prevHash, difficulty);
+        retargeter.observe(difficulty, System.nanoTime() - start);
+        return blk;
     }
 
     public Block mine(int amount) throws NoSuchAlgorithmException {
-        return new Block(last.data.getNum() + 1, amount, last.data.getHash());
+        return mineBlock(getSize(), amount, getHash());
+    }
+
+    /**
+     * Mines the next block of this chain carrying a batch of transactions.
+     * The block is not appended.
+     *
+     * @param transactions the transactions of the block, of which there must be at least one
+     * @return the mined block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public Block mine(List<Transaction> transactions) throws NoSuchAlgorithmException {
+        return mineBlock(getSize(), transactions, getHash());
+    }
+
+    private Block mineBlock(int num, List<Transaction> transactions, Hash prevHash)
+            throws NoSuchAlgorithmException {
+        long start = System.nanoTime();
+        Block blk = miner == null
+            ? Block.mine(num, transactions, prevHash, difficulty, algorithm)
+            : miner.mine(num, transactions, prevHash, difficulty);
+        retargeter.observe(difficulty, System.nanoTime() - start);
+        return blk;
+    }
+
+    /**
+     * Mines the first block of this chain and sets the total cash to what it mints.
+     *
+     * @param initial the amount Alice starts with if there are no allocations
+     * @param allocations transactions whose receivers are credited with their
+     *     amounts, or null to pay the initial amount to Alice
+     * @return the first block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    private Block mineGenesis(int initial, List<Transaction> allocations)
+            throws NoSuchAlgorithmException {
+        if (allocations == null) {
+            totalCash = initial;
+            return mineBlock(0, initial, null);
+        }
+        long total = 0;
+        for (Transaction tx : allocations) {
+            total += tx.amount();
+        }
+        totalCash = Math.toIntExact(total);
+        return mineBlock(0, allocations, null);
+    }
+
+    /**
+     * Starts mining the next block of this chain in the background. The
+     * block is not appended. The returned future may be cancelled or given
+     * a timeout with {@link CompletableFuture#orTimeout(long, TimeUnit)},
+     * either of which stops the search.
+     *
+     * @param amount the transaction amount
+     * @return a future completed with the mined block
+     * @throws IllegalStateException if this chain has no {@link ParallelMiner}
+     */
+    public CompletableFuture<Block> mineAsync(int amount) {
+        return observed(requireMiner().mineAsync(getSize(), amount, getHash(), difficulty));
+    }
+
+    /**
+     * Starts mining the next block of this chain carrying a batch of
+     * transactions in the background. The block is not appended.
+     *
+     * @param transactions the transactions of the block, of which there must be at least one
+     * @return a future completed with the mined block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     * @throws IllegalStateException if this chain has no {@link ParallelMiner}
+     */
+    public CompletableFuture<Block> mineAsync(List<Transaction> transactions)
+            throws NoSuchAlgorithmException {
+        return observed(requireMiner().mineAsync(getSize(), transactions, getHash(), difficulty));
+    }
+
+    private ParallelMiner requireMiner() {
+        if (miner == null) {
+            throw new IllegalStateException("mining in the background needs a ParallelMiner");
+        }
+        return miner;
+    }
+
+    private CompletableFuture<Block> observed(CompletableFuture<Block> future) {
+        long start = System.nanoTime();
+        int target = difficulty;
+        future.thenAccept(blk -> retargeter.observe(target, System.nanoTime() - start));
+        return future;
     }
 
     public int getSize() {
-        return last.data.getNum() + 1;
+        return blocks.size();
+    }
+
+    /**
+     * @return the hash function blocks of this chain are hashed with
+     */
+    public PowHash getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @param num a block number
+     * @return the block with that number
+     * @throws IndexOutOfBoundsException if the chain has no such block
+     */
+    public Block get(int num) {
+        return blocks.get(num);
+    }
+
+    /**
+     * @param hash a block hash
+     * @return the block of this chain with that hash, or null if there is none
+     */
+    public Block get(Hash hash) {
+        return byHash.get(hash);
+    }
+
+    /**
+     * @return the difficulty the next block of this chain is mined at
+     */
+    public int getDifficulty() {
+        return difficulty;
     }
 
     public void append(Block blk) {
-        if (!blk.getPrevHash().equals(last.data.getHash())) {
+        if (blk.getNum() != getSize() || !blk.getPrevHash().equals(getHash())) {
             throw new IllegalArgumentException();
+        } else if (blk.getAlgorithm() != algorithm) {
+            throw new IllegalArgumentException(String.format(
+                "block %d is hashed with %s, not %s", blk.getNum(), blk.getAlgorithm(), algorithm));
+        } else if (blk.getDifficulty() < difficulty || !blk.isValid()) {
+            throw new IllegalArgumentException(String.format(
+                "block %d does not meet difficulty %d", blk.getNum(), difficulty));
+        } else if (!isAuthorized(blk)) {
+            throw new IllegalArgumentException(String.format(
+                "block %d has a transaction not authorized by its sender", blk.getNum()));
         } else {
-            Node n = new Node(blk);
-            last.next = n;
-            last = n;
+            if (store != null) {
+                try {
+                    store.append(blk, true);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            push(blk);
+            retarget(retargeter.nextDifficulty(blk.getDifficulty()));
+            if (checkpointInterval > 0 && blk.getNum() % checkpointInterval == 0) {
+                try {
+                    checkpoint();
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    private static boolean isAuthorized(Block blk) {
+        try {
+            return new SignatureVerifier().verify(blk.getTransactions());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void push(Block blk) {
+        if (!apply(balances, blk) && firstInvalid < 0) {
+            firstInvalid = blocks.size();
         }
+        add(blk);
+    }
+
+    /**
+     * Sets the difficulty of the next block and records it along with the
+     * retargeter's observations for the block just added.
+     *
+     * @param next the difficulty of the next block
+     */
+    private void retarget(int next) {
+        difficulty = next;
+        targets.add(new Target(next, retargeter.save()));
+    }
+
+    private void add(Block blk) {
+        blocks.add(blk);
+        byHash.put(blk.getHash(), blk);
     }
 
     public boolean removeLast() {
-        if (last.data.getNum() != 0) {
-            Node cur = first;
-            while (cur.next.next != null) {
-                cur = cur.next;
+        if (blocks.size() > 1) {
+            if (store != null) {
+                try {
+                    store.removeLast();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            Block blk = blocks.remove(blocks.size() - 1);
+            byHash.remove(blk.getHash());
+            unapply(balances, blk);
+            if (firstInvalid == blocks.size()) {
+                firstInvalid = -1;
+            }
+            targets.remove(targets.size() - 1);
+            Target target = targets.get(targets.size() - 1);
+            difficulty = target.difficulty();
+            retargeter.restore(target.window());
+            if (checkpoint != null && checkpoint.getHeight() == blk.getNum()) {
+                checkpoint = null;
             }
-            last = cur;
-            last.next = null;
             return true;
         } else {
             return false;
@@ -60,46 +680,88 @@ public class BlockChain {
     }
 
     public Hash getHash() {
-        return last.data.getHash();
+        return last().getHash();
     }
 
+    /**
+     * @return true iff no transaction in the chain overdraws its sender
+     */
     public boolean isValidBlockChain() {
-        Node cur = first;
-        int ab = cur.data.getAmount();
-        int bb = 0;
-        while (cur.next != null) {
-            cur = cur.next;
-            int delta = cur.data.getAmount();
-            ab += delta;
-            bb -= delta;
-            if (ab < 0 || bb < 0) {
+        return firstInvalid < 0;
+    }
+
+    /**
+     * Recomputes every block's hash and checks it against the block's
+     * recorded hash and retargeted difficulty and against the next block's
+     * previous hash, and checks the signature of every transaction, in
+     * parallel, in addition to checking the balances.
+     *
+     * @return true iff the chain is cryptographically and monetarily valid
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public boolean verify() throws NoSuchAlgorithmException {
+        return new ChainVerifier(retargeter.getMinDifficulty()).verify(blocks)
+            && meetsRetargetedDifficulty(blocks) && isValidBlockChain();
+    }
+
+    /**
+     * Replays the difficulty along a chain: every block after the first must
+     * be at least as hard as the retargeter could have asked of it after its
+     * predecessor.
+     *
+     * @param chain the blocks of a chain, in order
+     * @return true iff no block falls below its retargeted difficulty
+     */
+    private boolean meetsRetargetedDifficulty(List<Block> chain) {
+        for (int i = 1; i < chain.size(); i++) {
+            int least = retargeter.minNextDifficulty(chain.get(i - 1).getDifficulty());
+            if (chain.get(i).getDifficulty() < least) {
                 return false;
             }
         }
         return true;
     }
 
-    public void printBalances() {
-        Node cur = first;
-        int ab = cur.data.getAmount();
-        int bb = 0;
-        while (cur.next != null) {
-            cur = cur.next;
-            int delta = cur.data.getAmount();
-            ab += delta;
-            bb -= delta;
+    /**
+     * Replays every block of the chain from the first, recomputing the
+     * balances and validity of the chain from scratch.
+     *
+     * @return true iff the replay agrees with the incrementally maintained state
+     */
+    public boolean audit() {
+        LongLongMap replay = new LongLongMap(balances.size());
+        mint(replay, blocks.get(0));
+        int invalid = -1;
+        for (int i = 1; i < blocks.size(); i++) {
+            if (!apply(replay, blocks.get(i)) && invalid < 0) {
+                invalid = i;
+            }
         }
-        System.out.printf("Alice: %d, Bob: %d\n", ab, bb);
+        boolean[] agrees = {true};
+        replay.forEach((account, balance) -> agrees[0] &= balances.get(account) == balance);
+        balances.forEach((account, balance) -> agrees[0] &= replay.get(account) == balance);
+        return agrees[0] && invalid == firstInvalid;
+    }
+
+    /**
+     * @param account an account number
+     * @return the account's balance after the last block of the chain
+     */
+    public long getBalance(long account) {
+        return balances.get(account);
+    }
+
+    public void printBalances() {
+        System.out.printf("Alice: %d, Bob: %d\n",
+            getBalance(Transaction.ALICE), getBalance(Transaction.BOB));
     }
 
     public String toString() {
         StringBuffer buf = new StringBuffer();
-        Node cur = first;
-        buf.append(cur.data);
-        while (cur.next != null) {
-            cur = cur.next;
+        buf.append(blocks.get(0));
+        for (int i = 1; i < blocks.size(); i++) {
             buf.append("\n");
-            buf.append(cur.data);
+            buf.append(blocks.get(i));
         }
         return buf.toString();
     }
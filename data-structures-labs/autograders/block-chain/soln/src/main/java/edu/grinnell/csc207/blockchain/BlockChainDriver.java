@@ -1,75 +1,290 @@
 package edu.grinnell.csc207.blockchain;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.management.JMException;
 
 /**
  * The main driver for the block chain program.
  */
 public class BlockChainDriver {
+    private static final int MIN_DIFFICULTY = 8;
+    private static final int MAX_DIFFICULTY = 64;
+    private static final int RETARGET_WINDOW = 8;
+    private static final int GROUP_COMMIT = 16;
+    private static final String AMOUNT_PROMPT = "Amount transferred?";
+    private static final int MAX_BLOCK_TRANSACTIONS = 1000;
+
     public static void printUsage() {
-        System.out.println("Usage: BlockChainDriver <amount>");
+        System.out.println(
+            "Usage: BlockChainDriver <amount> [--target <seconds per block>] [--ledger <file>]"
+            + " [--timeout <seconds to mine>] [--pow sha-256|sha-512/256|blake3]"
+            + " [--script <file> | --oplog <file>]");
     }
 
     public static void printCommands() {
         System.out.println("Valid commands: ");
-        System.out.println("    mine: discovers the nonce for a given transaction");
+        System.out.println("    mine: discovers the nonce for a transaction in the background");
+        System.out.println("        (several amounts or sender:receiver:amount mine a batch)");
+        System.out.println("    status: prints the progress of mining in the background");
+        System.out.println("    cancel: stops mining in the background");
         System.out.println("    append: appends a new block onto the end of the chain");
         System.out.println("    remove: removes the last block from the end of the chain");
+        System.out.println("    submit: adds a transaction with a fee to the pending pool");
+        System.out.println("    assemble: mines a block of the top pending transactions");
         System.out.println("    check: checks that the block chain is valid");
+        System.out.println("    verify: recomputes and checks every block's hash and links");
+        System.out.println("    audit: replays the whole chain to cross-check its balances");
+        System.out.println("    balance: prints the balance of an account");
         System.out.println("    help: prints this list of commands");
         System.out.println("    quit: quits the program");
     }
 
+    /**
+     * @param token an amount transferred from Bob to Alice, or a transfer
+     *     between two accounts written {@code sender:receiver:amount}
+     * @return the transaction the token describes
+     */
+    public static Transaction parseTransaction(String token) {
+        String[] parts = token.split(":");
+        if (parts.length == 3) {
+            return new Transaction(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                Integer.parseInt(parts[2]));
+        } else {
+            return new Transaction(Integer.parseInt(token));
+        }
+    }
+
+    /**
+     * @param line one or more whitespace-separated transactions
+     * @return the transactions of the line
+     */
+    public static List<Transaction> parseTransactions(String line) {
+        List<Transaction> txs = new ArrayList<>();
+        for (String token : line.trim().split("\\s+")) {
+            txs.add(parseTransaction(token));
+        }
+        return txs;
+    }
+
+    /**
+     * @param line one or more whitespace-separated transactions
+     * @return true iff the line is a single amount between Alice and Bob
+     */
+    public static boolean isSingleAmount(String line) {
+        return !line.trim().contains(" ") && !line.contains(":");
+    }
+
+    /**
+     * Reports the outcome of mining in the background.
+     *
+     * @param blk the mined block, or null if mining failed
+     * @param e the reason mining failed, or null if it succeeded
+     */
+    private static void reportMined(Block blk, Throwable e) {
+        if (blk != null) {
+            System.out.printf("%namount = %d, nonce = %d%n", blk.getAmount(), blk.getNonce());
+        } else if (e instanceof CancellationException) {
+            System.out.printf("%nMining cancelled%n");
+        } else if (e instanceof TimeoutException) {
+            System.out.printf("%nMining timed out%n");
+        } else {
+            System.out.printf("%nMining failed: %s%n", e);
+        }
+    }
+
     public static String promptFor(Scanner in, String msg) {
         System.out.print(msg + " ");
         return in.nextLine();
     }
 
-    public static void main(String[] args) throws NoSuchAlgorithmException {
-        if (args.length != 1) {
+    public static void main(String[] args)
+            throws NoSuchAlgorithmException, IOException, JMException {
+        String amount = null;
+        String target = null;
+        String timeout = null;
+        String ledger = null;
+        String script = null;
+        String oplog = null;
+        String pow = null;
+        boolean isValid = true;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--target") && i + 1 < args.length) {
+                target = args[++i];
+            } else if (args[i].equals("--timeout") && i + 1 < args.length) {
+                timeout = args[++i];
+            } else if (args[i].equals("--ledger") && i + 1 < args.length) {
+                ledger = args[++i];
+            } else if (args[i].equals("--script") && i + 1 < args.length) {
+                script = args[++i];
+            } else if (args[i].equals("--oplog") && i + 1 < args.length) {
+                oplog = args[++i];
+            } else if (args[i].equals("--pow") && i + 1 < args.length) {
+                pow = args[++i];
+            } else if (amount == null) {
+                amount = args[i];
+            } else {
+                isValid = false;
+            }
+        }
+        if (!isValid || amount == null || script != null && oplog != null) {
             printUsage();
         } else {
-            BlockChain chain = new BlockChain(Integer.parseInt(args[0]));
+            PowHash algorithm = pow == null ? PowHash.SHA_256 : PowHash.forName(pow);
+            Retargeter retargeter = target == null
+                ? Retargeter.fixed(Hash.DEFAULT_DIFFICULTY)
+                : new Retargeter(Hash.DEFAULT_DIFFICULTY, MIN_DIFFICULTY, MAX_DIFFICULTY,
+                    (long) (Double.parseDouble(target) * 1e9), RETARGET_WINDOW);
+            BlockStore store = ledger == null
+                ? null
+                : BlockStore.open(Path.of(ledger), GROUP_COMMIT, algorithm);
+            // N.B., an existing ledger keeps the hash function it was started with
+            if (store != null) {
+                algorithm = store.getAlgorithm();
+            }
+            ParallelMiner miner = new ParallelMiner(Runtime.getRuntime().availableProcessors(),
+                ParallelMiner.Mode.LOWEST, algorithm);
+            BlockChain chain = store == null
+                ? new BlockChain(Integer.parseInt(amount), miner, retargeter)
+                : new BlockChain(Integer.parseInt(amount), miner, retargeter, store);
+            miner.getStats().register("driver");
+            CompletableFuture<Block> mining = null;
+            Mempool pool = new Mempool(chain);
+            BlockAssembler assembler = new BlockAssembler(chain, pool, MAX_BLOCK_TRANSACTIONS);
+            if (script != null || oplog != null) {
+                BatchRunner runner = new BatchRunner(chain, pool, assembler, System.out);
+                long start = System.nanoTime();
+                long ran;
+                if (script != null) {
+                    try (BufferedReader in = Files.newBufferedReader(Path.of(script))) {
+                        ran = runner.runScript(in);
+                    }
+                } else {
+                    try (DataInputStream in = new DataInputStream(
+                            new BufferedInputStream(Files.newInputStream(Path.of(oplog))))) {
+                        ran = runner.runLog(in);
+                    }
+                }
+                System.out.printf("Ran %d commands in %.3f s; chain has %d blocks%n",
+                    ran, (System.nanoTime() - start) / 1e9, chain.getSize());
+                runner.printTimings();
+            }
             Scanner in = new Scanner(System.in);
-            boolean isRunning = true;
+            boolean isRunning = script == null && oplog == null;
             while (isRunning) {
                 System.out.println(chain.toString());
                 String resp = promptFor(in, "Command?");
-                if (resp.equals("mine")) {
-                    int amt = Integer.parseInt(promptFor(in, "Amount transferred?"));
-                    Block blk = chain.mine(amt);
-                    System.out.printf("amount = %d, nonce = %d\n", amt, blk.getNonce());
-                } else if (resp.equals("append")) {
-                    int amt = Integer.parseInt(promptFor(in, "Amount transferred?"));
-                    long nonce = Long.parseLong(promptFor(in, "Nonce?"));
-                    Block blk = new Block(chain.getSize(), amt, chain.getHash(), nonce);
-                    if (blk.getHash().isValid()) {
-                        chain.append(blk);
-                    } else {
-                        System.out.printf("Error: invalid nonce (produces %s)\n", blk.getHash());
-                    }
-                } else if (resp.equals("remove")) {
-                    if (!chain.removeLast()) {
-                        System.out.println("Error: blockchain contains no transactions");
-                    }
-                } else if (resp.equals("check")) {
-                    if (chain.isValidBlockChain()) {
-                        System.out.println("Chain is valid!");
+                try {
+                    if (resp.equals("mine")) {
+                        if (mining != null && !mining.isDone()) {
+                            System.out.println("Error: already mining; cancel it first");
+                        } else {
+                            String line = promptFor(in, AMOUNT_PROMPT);
+                            mining = isSingleAmount(line)
+                                ? chain.mineAsync(Integer.parseInt(line.trim()))
+                                : chain.mineAsync(parseTransactions(line));
+                            if (timeout != null) {
+                                mining.orTimeout((long) (Double.parseDouble(timeout) * 1000),
+                                    TimeUnit.MILLISECONDS);
+                            }
+                            mining.whenComplete(BlockChainDriver::reportMined);
+                            System.out.println("Mining in the background...");
+                        }
+                    } else if (resp.equals("status")) {
+                        System.out.println(miner.getStats());
+                    } else if (resp.equals("cancel")) {
+                        if (mining == null || !mining.cancel(true)) {
+                            System.out.println("Error: not mining");
+                        }
+                    } else if (resp.equals("append")) {
+                        String line = promptFor(in, AMOUNT_PROMPT);
+                        long nonce = Long.parseLong(promptFor(in, "Nonce?"));
+                        Block blk = isSingleAmount(line)
+                            ? new Block(chain.getSize(), Integer.parseInt(line.trim()),
+                                chain.getHash(), nonce, chain.getDifficulty())
+                            : new Block(chain.getSize(), parseTransactions(line),
+                                chain.getHash(), nonce, chain.getDifficulty());
+                        if (blk.isValid()) {
+                            chain.append(blk);
+                        } else {
+                            System.out.printf("Error: invalid nonce (produces %s)\n",
+                                blk.getHash());
+                        }
+                    } else if (resp.equals("remove")) {
+                        if (!chain.removeLast()) {
+                            System.out.println("Error: blockchain contains no transactions");
+                        }
+                    } else if (resp.equals("submit")) {
+                        Transaction tx = parseTransaction(promptFor(in, AMOUNT_PROMPT).trim());
+                        long fee = Long.parseLong(promptFor(in, "Fee?"));
+                        if (!pool.submit(tx, fee)) {
+                            System.out.printf("Error: account %d cannot afford %d on top of"
+                                + " its pending transactions\n", tx.sender(), tx.amount());
+                        }
+                    } else if (resp.equals("assemble")) {
+                        Block blk = assembler.assemble();
+                        if (blk == null) {
+                            System.out.println("Error: no pending transactions");
+                        } else {
+                            System.out.printf("mined %d transactions, nonce = %d\n",
+                                blk.getTransactions().size(), blk.getNonce());
+                        }
+                    } else if (resp.equals("check")) {
+                        if (chain.isValidBlockChain()) {
+                            System.out.println("Chain is valid!");
+                        } else {
+                            System.out.println("Chain is invalid!");
+                        }
+                    } else if (resp.equals("verify")) {
+                        if (chain.verify()) {
+                            System.out.println("Chain verified!");
+                        } else {
+                            System.out.println("Chain failed verification!");
+                        }
+                    } else if (resp.equals("audit")) {
+                        if (chain.audit()) {
+                            System.out.println("Audit passed!");
+                        } else {
+                            System.out.println("Audit failed: balances are inconsistent!");
+                        }
+                    } else if (resp.equals("report")) {
+                        chain.printBalances();
+                    } else if (resp.equals("balance")) {
+                        long account = Long.parseLong(promptFor(in, "Account?"));
+                        System.out.printf("Account %d: %d\n", account, chain.getBalance(account));
+                    } else if (resp.equals("help")) {
+                        printCommands();
+                    } else if (resp.equals("quit")) {
+                        isRunning = false;
                     } else {
-                        System.out.println("Chain is invalid!");
+                        System.out.printf("Error: \"%s\" is not a valid command\n", resp);
                     }
-                } else if (resp.equals("report")) {
-                    chain.printBalances();
-                } else if (resp.equals("help")) {
-                    printCommands();
-                } else if (resp.equals("quit")) {
-                    isRunning = false;
-                } else {
-                    System.out.printf("Error: \"%s\" is not a valid command\n", resp);
+                } catch (IllegalArgumentException | IllegalStateException
+                        | UncheckedIOException e) {
+                    System.out.printf("Error: %s\n", e.getMessage());
                 }
                 System.out.println();
             }
+            if (mining != null) {
+                mining.cancel(true);
+            }
+            miner.shutdown();
+            if (store != null) {
+                store.close();
+            }
         }
     }
 }
@@ -0,0 +1,375 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only ledger file of blocks.
+ *
+ * <p>The file is a sequence of records, each laid out as
+ * <pre>
+ *   int length | byte type | payload | int crc32c(type + payload)
+ * </pre>
+ * where {@code length} counts the type and payload bytes. A record either
+ * appends a block to the ledger or removes its last block, so the file is
+ * never rewritten in place. The payload of a block carrying a batch of
+ * transactions ends with its Merkle root and its transactions.
+ *
+ * <p>A ledger may start with a header record whose payload is the code of
+ * the {@link PowHash} its blocks are hashed with. A ledger without one
+ * predates the choice and is hashed with sha-256.
+ *
+ * <p>Writes are buffered and group-committed: the buffer is written and
+ * forced to disk with {@link FileChannel#force(boolean)} once every
+ * {@code groupCommit} records, or whenever {@link #sync()} is called. When a
+ * ledger is reopened after a crash, the first record that is cut short or
+ * fails its checksum marks a torn tail, and the file is truncated there.
+ *
+ * <p>A ledger is mapped whole when it is opened, so it may not grow past
+ * {@link #MAX_BYTES}: a record that would take it past the limit is refused
+ * before any of it is written.
+ */
+public class BlockStore implements Closeable {
+    /**
+     * A block recovered from the ledger along with whether its hash had
+     * already been verified when it was written.
+     *
+     * @param block the block
+     * @param verified true iff the block's hash was verified before it was stored
+     */
+    public record StoredBlock(Block block, boolean verified) { }
+
+    private static final byte APPEND = 1;
+    private static final byte APPEND_VERIFIED = 2;
+    private static final byte REMOVE_LAST = 3;
+    private static final byte HEADER = 4;
+
+    /** The size of a record's length prefix and checksum. */
+    private static final int OVERHEAD = 8;
+
+    /** The largest a ledger may grow, as it is mapped into a single buffer. */
+    public static final long MAX_BYTES = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final int groupCommit;
+    private final List<StoredBlock> recovered;
+    private final long truncatedBytes;
+    private final long maxBytes;
+    private long size;
+    private PowHash algorithm;
+    private ByteBuffer buffer;
+    private int pending;
+
+    private BlockStore(FileChannel channel, int groupCommit, PowHash algorithm, long maxBytes)
+            throws IOException {
+        this.channel = channel;
+        this.groupCommit = groupCommit;
+        this.recovered = new ArrayList<>();
+        this.algorithm = PowHash.SHA_256;
+        this.maxBytes = maxBytes;
+        long size = channel.size();
+        if (size > maxBytes) {
+            throw new IOException("ledger too large to map: " + size + " bytes");
+        }
+        long end = recover(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        if (end < size) {
+            channel.truncate(end);
+            channel.force(true);
+        }
+        this.truncatedBytes = size - end;
+        this.size = end;
+        channel.position(end);
+        this.buffer = ByteBuffer.allocate(1 << 16);
+        this.pending = 0;
+        if (end == 0 && algorithm != PowHash.SHA_256) {
+            this.algorithm = algorithm;
+            ByteBuffer rec = reserve(2);
+            int start = rec.position();
+            rec.putInt(2);
+            rec.put(HEADER);
+            rec.put(algorithm.getCode());
+            commit(rec, start);
+            sync();
+        }
+    }
+
+    /**
+     * Opens the ledger at the given path, creating it if needed and
+     * truncating any torn tail left by a crash.
+     *
+     * @param path the ledger file
+     * @param groupCommit the number of records written per forced flush
+     * @return the opened ledger
+     * @throws IOException if the file cannot be read or written
+     */
+    public static BlockStore open(Path path, int groupCommit) throws IOException {
+        return open(path, groupCommit, PowHash.SHA_256);
+    }
+
+    /**
+     * Opens the ledger at the given path, creating it if needed and
+     * truncating any torn tail left by a crash. A new ledger records the
+     * given hash function; an existing one keeps the one it recorded.
+     *
+     * @param path the ledger file
+     * @param groupCommit the number of records written per forced flush
+     * @param algorithm the hash function of the chain if the ledger is new
+     * @return the opened ledger
+     * @throws IOException if the file cannot be read or written
+     */
+    public static BlockStore open(Path path, int groupCommit, PowHash algorithm)
+            throws IOException {
+        return open(path, groupCommit, algorithm, MAX_BYTES);
+    }
+
+    /**
+     * Opens the ledger at the given path with a smaller size limit than
+     * {@link #MAX_BYTES}, so tests can fill it.
+     *
+     * @param path the ledger file
+     * @param groupCommit the number of records written per forced flush
+     * @param algorithm the hash function of the chain if the ledger is new
+     * @param maxBytes the largest the ledger may grow, at most {@link #MAX_BYTES}
+     * @return the opened ledger
+     * @throws IOException if the file cannot be read or written
+     */
+    static BlockStore open(Path path, int groupCommit, PowHash algorithm, long maxBytes)
+            throws IOException {
+        if (groupCommit < 1) {
+            throw new IllegalArgumentException("groupCommit must be positive: " + groupCommit);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new BlockStore(channel, groupCommit, algorithm, maxBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Replays the records of the mapped file into {@link #recovered}.
+     *
+     * @param map the contents of the ledger file
+     * @return the offset just past the last intact record
+     */
+    private long recover(MappedByteBuffer map) {
+        CRC32C crc = new CRC32C();
+        while (map.remaining() >= OVERHEAD) {
+            int start = map.position();
+            int length = map.getInt();
+            if (length < 1 || length > map.remaining() - 4) {
+                return start;
+            }
+            ByteBuffer body = map.slice(map.position(), length);
+            crc.reset();
+            crc.update(body.duplicate());
+            map.position(map.position() + length);
+            if ((int) crc.getValue() != map.getInt()) {
+                return start;
+            }
+            byte type = body.get();
+            if (type == HEADER && start == 0 && body.remaining() == 1) {
+                try {
+                    algorithm = PowHash.forCode(body.get());
+                } catch (IllegalArgumentException e) {
+                    return start;
+                }
+            } else if (type == REMOVE_LAST && body.remaining() == 0 && !recovered.isEmpty()) {
+                recovered.remove(recovered.size() - 1);
+            } else if (type == APPEND || type == APPEND_VERIFIED) {
+                try {
+                    recovered.add(
+                        new StoredBlock(decode(body, algorithm), type == APPEND_VERIFIED));
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    return start;
+                }
+            } else {
+                return start;
+            }
+        }
+        return map.position();
+    }
+
+    /**
+     * @return the blocks of the ledger, in order, as of when it was opened
+     */
+    public List<StoredBlock> getBlocks() {
+        return recovered;
+    }
+
+    /**
+     * @return the hash function recorded in the ledger, or sha-256 if it records none
+     */
+    public PowHash getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the number of bytes of torn tail truncated when the ledger was opened
+     */
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    /**
+     * Appends a block to the ledger.
+     *
+     * @param blk the block
+     * @param verified true iff the block's hash has been verified
+     * @throws IOException if the ledger cannot be written or would grow too large
+     */
+    public void append(Block blk, boolean verified) throws IOException {
+        Hash prev = blk.getPrevHash();
+        Hash root = blk.getMerkleRoot();
+        int length = 1 + 4 + 4 + 4 + 8 + hashSize(prev) + hashSize(blk.getHash());
+        if (root != null) {
+            length += hashSize(root) + 4;
+            for (Transaction tx : blk.getTransactions()) {
+                length += tx.serializedSize();
+            }
+        }
+        ByteBuffer rec = reserve(length);
+        int start = rec.position();
+        rec.putInt(length);
+        rec.put(verified ? APPEND_VERIFIED : APPEND);
+        rec.putInt(blk.getNum());
+        rec.putInt(blk.getAmount());
+        rec.putInt(blk.getDifficulty());
+        rec.putLong(blk.getNonce());
+        putHash(rec, prev);
+        putHash(rec, blk.getHash());
+        if (root != null) {
+            putHash(rec, root);
+            rec.putInt(blk.getTransactions().size());
+            for (Transaction tx : blk.getTransactions()) {
+                tx.writeTo(rec);
+            }
+        }
+        commit(rec, start);
+    }
+
+    /**
+     * Records the removal of the last block of the ledger.
+     *
+     * @throws IOException if the ledger cannot be written or would grow too large
+     */
+    public void removeLast() throws IOException {
+        ByteBuffer rec = reserve(1);
+        int start = rec.position();
+        rec.putInt(1);
+        rec.put(REMOVE_LAST);
+        commit(rec, start);
+    }
+
+    /**
+     * Writes every buffered record and forces them to disk.
+     *
+     * @throws IOException if the ledger cannot be written
+     */
+    public void sync() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        if (pending > 0) {
+            channel.force(false);
+            pending = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer reserve(int length) throws IOException {
+        int needed = length + OVERHEAD;
+        if (size + needed > maxBytes) {
+            throw new IOException(String.format(
+                "ledger full: a %d-byte record would grow it past %d bytes", needed, maxBytes));
+        }
+        size += needed;
+        if (buffer.remaining() < needed) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+            if (buffer.capacity() < needed) {
+                buffer = ByteBuffer.allocate(needed);
+            }
+        }
+        return buffer;
+    }
+
+    private void commit(ByteBuffer rec, int start) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(rec.array(), start + 4, rec.position() - start - 4);
+        rec.putInt((int) crc.getValue());
+        pending += 1;
+        if (pending >= groupCommit) {
+            sync();
+        }
+    }
+
+    private static int hashSize(Hash h) {
+        return 1 + (h == null ? 0 : h.length());
+    }
+
+    private static void putHash(ByteBuffer buf, Hash h) {
+        if (h == null) {
+            buf.put((byte) 0);
+        } else {
+            buf.put((byte) h.length());
+            buf.put(h.getData());
+        }
+    }
+
+    private static Hash getHash(ByteBuffer buf) {
+        int length = Byte.toUnsignedInt(buf.get());
+        if (length == 0) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        buf.get(data);
+        return new Hash(data);
+    }
+
+    private static Block decode(ByteBuffer body, PowHash algorithm) {
+        int num = body.getInt();
+        int amount = body.getInt();
+        int difficulty = body.getInt();
+        long nonce = body.getLong();
+        Hash prev = getHash(body);
+        Hash hash = getHash(body);
+        if (!body.hasRemaining()) {
+            return new Block(num, amount, prev, nonce, difficulty, hash, algorithm);
+        }
+        Hash root = getHash(body);
+        int count = body.getInt();
+        if (count < 0 || count > body.remaining() / Transaction.MIN_BYTES) {
+            throw new BufferUnderflowException();
+        }
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(Transaction.readFrom(body));
+        }
+        return new Block(num, transactions, root, prev, nonce, difficulty, hash, algorithm);
+    }
+}
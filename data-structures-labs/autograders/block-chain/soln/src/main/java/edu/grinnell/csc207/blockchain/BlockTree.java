@@ -0,0 +1,252 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A tree of blocks descending from one first block, holding every
+ * competing fork rather than only a single chain.
+ *
+ * <p>The best chain is the branch with the most cumulative work, where a
+ * block of difficulty {@code d} counts for the 2<sup>d</sup> hashes it takes
+ * to mine on average; ties go to the tip that was seen first. A block whose
+ * parent has not been seen yet is held as an orphan and attached once its
+ * parent arrives, so blocks may be added in any order.
+ *
+ * <p>The tree only checks proof of work and linkage. Whether the best
+ * chain's transactions are valid is left to a {@link BlockChain} kept in
+ * line with it by {@link #reorganize(BlockChain)}.
+ */
+public class BlockTree {
+    /**
+     * A block attached to the tree along with its parent and the work of
+     * the branch ending in it.
+     */
+    private static final class Node {
+        private final Block block;
+        private final Node parent;
+        private final BigInteger work;
+
+        Node(Block block, Node parent) {
+            this.block = block;
+            this.parent = parent;
+            BigInteger own = BigInteger.ONE.shiftLeft(block.getDifficulty());
+            this.work = parent == null ? own : parent.work.add(own);
+        }
+    }
+
+    private final MessageDigest md;
+    private final HashMap<Hash, Node> nodes;
+    private final HashMap<Hash, List<Block>> orphans;
+    private int orphanCount;
+    private Node tip;
+
+    /**
+     * @param genesis the first block of every chain in the tree, whose hash
+     *     function every block must be hashed with
+     * @throws NoSuchAlgorithmException if the first block's hash function is unavailable
+     */
+    public BlockTree(Block genesis) throws NoSuchAlgorithmException {
+        this.md = genesis.getAlgorithm().newDigest();
+        this.nodes = new HashMap<>();
+        this.orphans = new HashMap<>();
+        this.tip = new Node(genesis, null);
+        nodes.put(genesis.getHash(), tip);
+    }
+
+    /**
+     * Adds a block to the tree, switching the best chain over to its branch
+     * if that branch now has the most work.
+     *
+     * @param blk a block
+     * @return the blocks that joined the best chain, from just past the fork
+     *     point up to the new tip, or an empty list if the tip did not change
+     * @throws IllegalArgumentException if the block's hash is not the hash of
+     *     its contents with the tree's hash function or does not meet its
+     *     difficulty, or the block is not numbered after its parent
+     */
+    public List<Block> add(Block blk) {
+        if (blk.getAlgorithm() != tip.block.getAlgorithm() || !blk.isValid()
+                || !blk.hashMatches(md)) {
+            throw new IllegalArgumentException("block " + blk.getNum() + " has an invalid hash");
+        }
+        if (nodes.containsKey(blk.getHash())) {
+            return List.of();
+        }
+        Node parent = nodes.get(blk.getPrevHash());
+        if (parent == null) {
+            orphans.computeIfAbsent(blk.getPrevHash(), h -> new ArrayList<>()).add(blk);
+            orphanCount += 1;
+            return List.of();
+        }
+        Node node = attach(blk, parent);
+        if (node == null) {
+            throw new IllegalArgumentException("block " + blk.getNum() + " does not follow "
+                + "block " + parent.block.getNum());
+        }
+        Node best = tip;
+        Deque<Node> attached = new ArrayDeque<>();
+        attached.push(node);
+        while (!attached.isEmpty()) {
+            node = attached.pop();
+            if (node.work.compareTo(best.work) > 0) {
+                best = node;
+            }
+            List<Block> waiting = orphans.remove(node.block.getHash());
+            if (waiting != null) {
+                orphanCount -= waiting.size();
+                for (Block child : waiting) {
+                    Node childNode = attach(child, node);
+                    if (childNode != null) {
+                        attached.push(childNode);
+                    }
+                }
+            }
+        }
+        if (best == tip) {
+            return List.of();
+        }
+        Node old = tip;
+        tip = best;
+        return branch(old, best);
+    }
+
+    /**
+     * @param blk a block
+     * @param parent the node of the block's parent
+     * @return the node of the block, or null if it is not numbered after its
+     *     parent or is already attached
+     */
+    private Node attach(Block blk, Node parent) {
+        if (blk.getNum() != parent.block.getNum() + 1 || nodes.containsKey(blk.getHash())) {
+            return null;
+        }
+        Node node = new Node(blk, parent);
+        nodes.put(blk.getHash(), node);
+        return node;
+    }
+
+    /**
+     * @param from the old tip
+     * @param to the new tip
+     * @return the blocks from just past the common ancestor of the tips up to the new tip
+     */
+    private static List<Block> branch(Node from, Node to) {
+        List<Block> blocks = new ArrayList<>();
+        Node a = from;
+        Node b = to;
+        while (a.block.getNum() > b.block.getNum()) {
+            a = a.parent;
+        }
+        while (b.block.getNum() > a.block.getNum()) {
+            blocks.add(b.block);
+            b = b.parent;
+        }
+        while (a != b) {
+            blocks.add(b.block);
+            a = a.parent;
+            b = b.parent;
+        }
+        Collections.reverse(blocks);
+        return blocks;
+    }
+
+    /**
+     * @return the last block of the best chain
+     */
+    public Block getTip() {
+        return tip.block;
+    }
+
+    /**
+     * @return the cumulative work of the best chain
+     */
+    public BigInteger getWork() {
+        return tip.work;
+    }
+
+    /**
+     * @param hash a block hash
+     * @return true iff a block with that hash is attached to the tree
+     */
+    public boolean contains(Hash hash) {
+        return nodes.containsKey(hash);
+    }
+
+    /**
+     * @return the number of blocks attached to the tree, on any branch
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return the number of blocks held until their parent arrives
+     */
+    public int getOrphanCount() {
+        return orphanCount;
+    }
+
+    /**
+     * @return the blocks of the best chain, from the first block to the tip
+     */
+    public List<Block> getBestChain() {
+        List<Block> blocks = new ArrayList<>(tip.block.getNum() + 1);
+        for (Node node = tip; node != null; node = node.parent) {
+            blocks.add(node.block);
+        }
+        Collections.reverse(blocks);
+        return blocks;
+    }
+
+    /**
+     * Brings a chain that starts with this tree's first block in line with
+     * the best chain: the chain's blocks past the fork point are removed,
+     * undoing their transactions, and the best chain's blocks are appended.
+     * If the chain refuses a block of the best chain, the blocks appended so
+     * far are removed and the chain's own blocks are put back, leaving it as
+     * it was.
+     *
+     * @param chain a chain starting with the same first block as this tree
+     * @throws IllegalArgumentException if the chain does not share this
+     *     tree's first block, or a block of the best chain is not authorized
+     *     or does not meet the chain's difficulty
+     */
+    public void reorganize(BlockChain chain) {
+        List<Block> best = getBestChain();
+        if (!chain.get(0).getHash().equals(best.get(0).getHash())) {
+            throw new IllegalArgumentException("chain does not share the tree's first block");
+        }
+        int common = 0;
+        int limit = Math.min(chain.getSize(), best.size());
+        while (common + 1 < limit
+                && chain.get(common + 1).getHash().equals(best.get(common + 1).getHash())) {
+            common += 1;
+        }
+        List<Block> removed = new ArrayList<>();
+        while (chain.getSize() > common + 1) {
+            removed.add(chain.get(chain.getSize() - 1));
+            chain.removeLast();
+        }
+        try {
+            for (int i = common + 1; i < best.size(); i++) {
+                chain.append(best.get(i));
+            }
+        } catch (RuntimeException e) {
+            while (chain.getSize() > common + 1) {
+                chain.removeLast();
+            }
+            for (int i = removed.size() - 1; i >= 0; i--) {
+                chain.append(removed.get(i));
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Checks the cryptographic integrity of a sequence of blocks: every block's
+ * recorded hash must be the hash of its contents and meet its difficulty,
+ * every block must point at the hash of the block before it, and every
+ * transaction must be authorized by its sender.
+ *
+ * <p>A block's hash depends only on its own fields, so the hashes are
+ * recomputed in parallel by splitting the sequence in halves with fork/join.
+ * The linkage between neighbouring blocks is then checked in one linear pass,
+ * and finally the signatures of all the transactions are checked together by
+ * a {@link SignatureVerifier} in the same pool.
+ *
+ * <p>Every block of a sequence must be hashed with the same {@link PowHash}
+ * as its first block, so a chain cannot switch hash functions part way.
+ */
+public class ChainVerifier {
+    /** Ranges of at most this many blocks are hashed on a single thread. */
+    static final int THRESHOLD = 512;
+
+    private final ForkJoinPool pool;
+    private final int minDifficulty;
+
+    /**
+     * @param pool the pool to recompute hashes in
+     * @param minDifficulty the smallest difficulty a block may record
+     */
+    public ChainVerifier(ForkJoinPool pool, int minDifficulty) {
+        this.pool = pool;
+        this.minDifficulty = minDifficulty;
+    }
+
+    /**
+     * @param minDifficulty the smallest difficulty a block may record
+     */
+    public ChainVerifier(int minDifficulty) {
+        this(ForkJoinPool.commonPool(), minDifficulty);
+    }
+
+    /**
+     * @param blocks a sequence of consecutive blocks
+     * @return true iff every block of the sequence verifies
+     * @throws NoSuchAlgorithmException if sha-256 or the chain's hash function is unavailable
+     */
+    public boolean verify(List<Block> blocks) throws NoSuchAlgorithmException {
+        return findInvalid(blocks) < 0;
+    }
+
+    /**
+     * @param blocks a sequence of consecutive blocks
+     * @return the index of the first block that fails to verify, or -1 if all do
+     * @throws NoSuchAlgorithmException if sha-256 or the chain's hash function is unavailable
+     */
+    public int findInvalid(List<Block> blocks) throws NoSuchAlgorithmException {
+        if (blocks.isEmpty()) {
+            return -1;
+        }
+        PowHash algorithm = blocks.get(0).getAlgorithm();
+        // N.B., fail here rather than inside every task
+        algorithm.newDigest();
+        int bad = pool.invoke(new HashTask(blocks, 0, blocks.size(), algorithm));
+        int end = bad < 0 ? blocks.size() : bad;
+        for (int i = 0; i < end; i++) {
+            if (!isLinked(blocks, i)) {
+                return i;
+            }
+        }
+        int unauthorized = findUnauthorized(blocks, end);
+        return unauthorized >= 0 ? unauthorized : bad;
+    }
+
+    /**
+     * Verifies the signatures of the transactions of a prefix of the
+     * sequence all at once, so that a few large blocks still spread over
+     * the whole pool. The first block of a chain mints money rather than
+     * transferring it, so its transactions need no signatures.
+     *
+     * @param blocks a sequence of consecutive blocks
+     * @param end the number of blocks of the prefix to check
+     * @return the index of the first block with an unauthorized transaction, or -1
+     * @throws NoSuchAlgorithmException if sha-256 or Ed25519 is unavailable
+     */
+    private int findUnauthorized(List<Block> blocks, int end) throws NoSuchAlgorithmException {
+        List<Transaction> txs = new ArrayList<>();
+        List<Integer> blockOf = new ArrayList<>();
+        for (int i = 0; i < end; i++) {
+            Block blk = blocks.get(i);
+            if (blk.getNum() != 0) {
+                for (Transaction tx : blk.getTransactions()) {
+                    txs.add(tx);
+                    blockOf.add(i);
+                }
+            }
+        }
+        int bad = new SignatureVerifier(pool).findUnauthorized(txs);
+        return bad < 0 ? -1 : blockOf.get(bad);
+    }
+
+    private static boolean isLinked(List<Block> blocks, int i) {
+        Block blk = blocks.get(i);
+        if (i == 0) {
+            return blk.getNum() != 0 || blk.getPrevHash() == null;
+        }
+        Block prev = blocks.get(i - 1);
+        return blk.getNum() == prev.getNum() + 1 && prev.getHash().equals(blk.getPrevHash());
+    }
+
+    private boolean hashVerifies(MessageDigest md, PowHash algorithm, Block blk) {
+        return blk.getAlgorithm() == algorithm && blk.getDifficulty() >= minDifficulty
+            && blk.isValid() && blk.hashMatches(md);
+    }
+
+    /**
+     * Recomputes the hashes of a range of blocks, returning the index of the
+     * first bad block in the range or -1.
+     */
+    @SuppressWarnings("serial")
+    private class HashTask extends RecursiveTask<Integer> {
+        private final List<Block> blocks;
+        private final int lo;
+        private final int hi;
+        private final PowHash algorithm;
+
+        HashTask(List<Block> blocks, int lo, int hi, PowHash algorithm) {
+            this.blocks = blocks;
+            this.lo = lo;
+            this.hi = hi;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (hi - lo <= THRESHOLD) {
+                MessageDigest md;
+                try {
+                    md = algorithm.newDigest();
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int i = lo; i < hi; i++) {
+                    if (!hashVerifies(md, algorithm, blocks.get(i))) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            int mid = (lo + hi) >>> 1;
+            HashTask left = new HashTask(blocks, lo, mid, algorithm);
+            HashTask right = new HashTask(blocks, mid, hi, algorithm);
+            right.fork();
+            int bad = left.compute();
+            int rightBad = right.join();
+            return bad >= 0 ? bad : rightBad;
+        }
+    }
+}
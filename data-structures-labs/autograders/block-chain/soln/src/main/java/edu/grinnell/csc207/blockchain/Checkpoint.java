@@ -0,0 +1,212 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A snapshot of the state of a chain as of one of its blocks: the hash of
+ * the block and the balance of every account after it.
+ *
+ * <p>A checkpoint is identified by its digest, the sha-256 hash of its
+ * contents with the accounts in order, so a checkpoint received from an
+ * untrusted source can be pinned to a digest obtained from a trusted one
+ * (see {@link #read(Path, Hash)}). A chain synced from a pinned checkpoint
+ * only needs to verify the blocks after it.
+ *
+ * <p>Accounts with a zero balance are left out, so two chains that agree on
+ * every balance have checkpoints with the same digest.
+ */
+public final class Checkpoint {
+    private static final int MAGIC = 0x43484b50;
+
+    private final int height;
+    private final Hash tip;
+    private final int firstInvalid;
+    private final long[] accounts;
+    private final long[] amounts;
+    private final Hash digest;
+
+    /**
+     * @param height the number of the last block covered by this checkpoint
+     * @param tip the hash of that block
+     * @param firstInvalid the number of the first block up to it that
+     *     overdraws its sender, or -1 if there is none
+     * @param balances the balance of every account after that block, which are copied
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    Checkpoint(int height, Hash tip, int firstInvalid, LongLongMap balances)
+            throws NoSuchAlgorithmException {
+        long[] nonZero = new long[balances.size()];
+        int[] count = {0};
+        balances.forEach((account, balance) -> {
+            if (balance != 0) {
+                nonZero[count[0]++] = account;
+            }
+        });
+        long[] accounts = Arrays.copyOf(nonZero, count[0]);
+        Arrays.sort(accounts);
+        long[] amounts = new long[accounts.length];
+        for (int i = 0; i < accounts.length; i++) {
+            amounts[i] = balances.get(accounts[i]);
+        }
+        this.height = height;
+        this.tip = tip;
+        this.firstInvalid = firstInvalid;
+        this.accounts = accounts;
+        this.amounts = amounts;
+        this.digest = digestOf(height, tip, firstInvalid, accounts, amounts);
+    }
+
+    private static Hash digestOf(int height, Hash tip, int firstInvalid, long[] accounts,
+            long[] amounts) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("sha-256");
+        ByteBuffer buf = ByteBuffer.allocate(4 + 4 + 1 + tip.length());
+        buf.putInt(height);
+        buf.putInt(firstInvalid);
+        buf.put((byte) tip.length());
+        buf.put(tip.getData());
+        md.update(buf.array());
+        ByteBuffer entry = ByteBuffer.allocate(16);
+        for (int i = 0; i < accounts.length; i++) {
+            entry.clear();
+            entry.putLong(accounts[i]);
+            entry.putLong(amounts[i]);
+            md.update(entry.array());
+        }
+        return new Hash(md.digest());
+    }
+
+    /**
+     * @return the number of the last block covered by this checkpoint
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the hash of the last block covered by this checkpoint
+     */
+    public Hash getTip() {
+        return tip;
+    }
+
+    /**
+     * @return the number of the first block up to the checkpoint that
+     *     overdraws its sender, or -1 if there is none
+     */
+    public int getFirstInvalid() {
+        return firstInvalid;
+    }
+
+    /**
+     * @return the digest identifying this checkpoint
+     */
+    public Hash getDigest() {
+        return digest;
+    }
+
+    /**
+     * @param account an account number
+     * @return the account's balance as of this checkpoint
+     */
+    public long getBalance(long account) {
+        int i = Arrays.binarySearch(accounts, account);
+        return i < 0 ? 0 : amounts[i];
+    }
+
+    /**
+     * @return the balances of this checkpoint, as a new map
+     */
+    LongLongMap getBalances() {
+        LongLongMap balances = new LongLongMap(accounts.length);
+        for (int i = 0; i < accounts.length; i++) {
+            balances.put(accounts[i], amounts[i]);
+        }
+        return balances;
+    }
+
+    /**
+     * Writes this checkpoint to a snapshot file, replacing the file if it exists.
+     *
+     * @param path the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(height);
+            out.writeInt(firstInvalid);
+            out.writeByte(tip.length());
+            out.write(tip.getData());
+            out.writeInt(accounts.length);
+            for (int i = 0; i < accounts.length; i++) {
+                out.writeLong(accounts[i]);
+                out.writeLong(amounts[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a checkpoint from a snapshot file and checks it against the
+     * digest it is pinned to.
+     *
+     * @param path the snapshot file
+     * @param pin the digest the checkpoint is trusted to have
+     * @return the checkpoint
+     * @throws IOException if the file cannot be read, is malformed or does
+     *     not match the pin
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public static Checkpoint read(Path path, Hash pin)
+            throws IOException, NoSuchAlgorithmException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a snapshot: " + path);
+            }
+            int height = in.readInt();
+            int firstInvalid = in.readInt();
+            byte[] tip = new byte[in.readUnsignedByte()];
+            in.readFully(tip);
+            int count = in.readInt();
+            if (height < 0 || tip.length == 0 || tip.length > Hash.MAX_LENGTH || count < 0) {
+                throw new IOException("malformed snapshot: " + path);
+            }
+            LongLongMap balances = new LongLongMap(Math.min(count, 1 << 20));
+            for (int i = 0; i < count; i++) {
+                balances.put(in.readLong(), in.readLong());
+            }
+            Checkpoint checkpoint = new Checkpoint(height, new Hash(tip), firstInvalid, balances);
+            if (!checkpoint.digest.equals(pin)) {
+                throw new IOException("snapshot " + path + " has digest " + checkpoint.digest
+                    + ", not the pinned " + pin);
+            }
+            return checkpoint;
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Checkpoint c && digest.equals(c.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return digest.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Checkpoint %d (tip: %s, digest: %s)", height, tip, digest);
+    }
+}
@@ -1,49 +1,168 @@
 package edu.grinnell.csc207.blockchain;
 
-import java.util.Arrays;
-
 /**
- * A wrapper class over a hash value (a byte array).
+ * An immutable hash value of up to 256 bits.
+ *
+ * <p>The bytes of the hash are packed big-endian into four longs, padded
+ * with zeros, along with the number of bytes the hash actually has. The
+ * hash code is computed once up front, so hashes make cheap keys for hash
+ * tables, and equality and leading-zero counts work a word at a time rather
+ * than a byte at a time.
  */
 public class Hash {
-    private byte[] data;
+    /** The number of leading zero bits a valid hash starts with by default. */
+    public static final int DEFAULT_DIFFICULTY = 24;
+
+    /** The largest number of bytes a hash may have. */
+    public static final int MAX_LENGTH = 32;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
+    private final int length;
+    private final int hashCode;
 
     /**
-     * @param data the byte array wrapped by this hash
+     * @param data the bytes of this hash, which are copied
+     * @throws IllegalArgumentException if data is longer than {@link #MAX_LENGTH} bytes
      */
     public Hash(byte[] data) {
-        this.data = data;
+        if (data.length > MAX_LENGTH) {
+            throw new IllegalArgumentException("hash too long: " + data.length + " bytes");
+        }
+        this.w0 = word(data, 0);
+        this.w1 = word(data, 8);
+        this.w2 = word(data, 16);
+        this.w3 = word(data, 24);
+        this.length = data.length;
+        this.hashCode = 31 * Long.hashCode(w0 ^ w1 ^ w2 ^ w3) + length;
+    }
+
+    /**
+     * @param data a byte array
+     * @param off an offset into data
+     * @return the 8 bytes of data starting at off as a big-endian long,
+     *     treating bytes past the end of data as zeros
+     */
+    private static long word(byte[] data, int off) {
+        long w = 0;
+        for (int i = off; i < off + 8; i++) {
+            w = w << 8 | (i < data.length ? data[i] & 0xffL : 0);
+        }
+        return w;
+    }
+
+    private long wordAt(int i) {
+        switch (i) {
+            case 0:
+                return w0;
+            case 1:
+                return w1;
+            case 2:
+                return w2;
+            default:
+                return w3;
+        }
+    }
+
+    /**
+     * @param i an index into this hash
+     * @return the byte of this hash at that index
+     */
+    private byte byteAt(int i) {
+        return (byte) (wordAt(i >>> 3) >>> (56 - 8 * (i & 7)));
     }
 
     /**
-     * @return the byte array wrapped by this hash
+     * @return a copy of the bytes of this hash
      */
     public byte[] getData() {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = byteAt(i);
+        }
         return data;
     }
 
+    /**
+     * @return the number of bytes of this hash
+     */
+    public int length() {
+        return length;
+    }
+
     /**
      * @return true iff the hash is valid (it starts with three zeros)
      */
     public boolean isValid() {
-        return data[0] == 0 && data[1] == 0 && data[2] == 0;
+        return meetsDifficulty(DEFAULT_DIFFICULTY);
+    }
+
+    /**
+     * @param difficulty the required number of leading zero bits
+     * @return true iff the hash starts with at least that many zero bits
+     */
+    public boolean meetsDifficulty(int difficulty) {
+        return leadingZeroBits() >= difficulty;
+    }
+
+    /**
+     * @return the number of leading zero bits of this hash
+     */
+    public int leadingZeroBits() {
+        int zeros;
+        if (w0 != 0) {
+            zeros = Long.numberOfLeadingZeros(w0);
+        } else if (w1 != 0) {
+            zeros = 64 + Long.numberOfLeadingZeros(w1);
+        } else if (w2 != 0) {
+            zeros = 128 + Long.numberOfLeadingZeros(w2);
+        } else {
+            zeros = 192 + Long.numberOfLeadingZeros(w3);
+        }
+        // N.B., the padding past the end of a short hash is all zeros
+        return Math.min(zeros, 8 * length);
+    }
+
+    /**
+     * @param data a big-endian bit string
+     * @return the number of leading zero bits of data
+     */
+    static int leadingZeroBits(byte[] data) {
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != 0) {
+                return 8 * i + Integer.numberOfLeadingZeros(data[i] & 0xff) - 24;
+            }
+        }
+        return 8 * data.length;
     }
 
     @Override
     public String toString() {
-        StringBuffer buf = new StringBuffer();
-        for (byte b : data) {
-            buf.append(String.format("%02x", Byte.toUnsignedInt(b)));
+        char[] buf = new char[2 * length];
+        for (int i = 0; i < length; i++) {
+            int b = byteAt(i) & 0xff;
+            buf[2 * i] = HEX_DIGITS[b >>> 4];
+            buf[2 * i + 1] = HEX_DIGITS[b & 0xf];
         }
-        return buf.toString();
+        return new String(buf);
     }
 
     @Override
     public boolean equals(Object other) {
-        if (other instanceof Hash) {
-            return Arrays.equals(data, ((Hash) other).data);
+        if (other instanceof Hash h) {
+            return ((w0 ^ h.w0) | (w1 ^ h.w1) | (w2 ^ h.w2) | (w3 ^ h.w3)
+                | (length ^ h.length)) == 0;
         } else {
             return false;
         }
     }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
 }
@@ -0,0 +1,183 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from longs to longs that stores its keys and values in flat
+ * primitive arrays, so neither keys nor values are ever boxed.
+ *
+ * <p>Collisions are resolved by linear probing in a power-of-two table that
+ * is doubled whenever it becomes two-thirds full. Keys are scrambled with a
+ * 64-bit mixing function first, so runs of consecutive keys, such as account
+ * numbers handed out in order, still spread evenly over the table. One key
+ * value is reserved to mark empty slots; a mapping for that key is kept in a
+ * separate field. Mappings are never removed, since a ledger never forgets
+ * an account.
+ */
+public class LongLongMap {
+    /**
+     * A visitor of the mappings of a map.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        /**
+         * @param key a key of the map
+         * @param value the value the key maps to
+         */
+        void visit(long key, long value);
+    }
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private boolean hasEmptyKey;
+    private long emptyKeyValue;
+
+    /**
+     * @param expected the number of mappings the map should hold without resizing
+     */
+    public LongLongMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected + expected / 2) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        this.size = 0;
+    }
+
+    /**
+     * Creates an empty map with room for a few mappings.
+     */
+    public LongLongMap() {
+        this(16);
+    }
+
+    /**
+     * @param key a key
+     * @return a well-scrambled hash of the key
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        return key ^ key >>> 33;
+    }
+
+    /**
+     * @param key a key other than the empty marker
+     * @return the slot holding the key, or the empty slot where it would go
+     */
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int i = (int) mix(key) & mask;
+        while (keys[i] != key && keys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * @return the number of keys in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param key a key
+     * @return the value the key maps to, or 0 if it is not in the map
+     */
+    public long get(long key) {
+        if (key == EMPTY) {
+            return emptyKeyValue;
+        }
+        return values[slot(key)];
+    }
+
+    /**
+     * @param key a key
+     * @return true iff the key is in this map
+     */
+    public boolean containsKey(long key) {
+        if (key == EMPTY) {
+            return hasEmptyKey;
+        }
+        return keys[slot(key)] == key;
+    }
+
+    /**
+     * @param key a key
+     * @param value the value to map the key to
+     */
+    public void put(long key, long value) {
+        if (key == EMPTY) {
+            size += hasEmptyKey ? 0 : 1;
+            hasEmptyKey = true;
+            emptyKeyValue = value;
+            return;
+        }
+        int i = slot(key);
+        if (keys[i] == EMPTY) {
+            keys[i] = key;
+            size += 1;
+            values[i] = value;
+            if (3 * size > 2 * keys.length) {
+                resize();
+            }
+        } else {
+            values[i] = value;
+        }
+    }
+
+    /**
+     * Adds to the value of a key, treating a missing key as mapping to 0.
+     *
+     * @param key a key
+     * @param delta the amount to add to the key's value
+     * @return the key's new value
+     */
+    public long add(long key, long delta) {
+        if (key == EMPTY) {
+            put(key, emptyKeyValue + delta);
+            return emptyKeyValue;
+        }
+        int i = slot(key);
+        if (keys[i] == EMPTY) {
+            put(key, delta);
+            return delta;
+        }
+        values[i] += delta;
+        return values[i];
+    }
+
+    /**
+     * @param visitor the visitor to call once for every mapping of this map
+     */
+    public void forEach(EntryVisitor visitor) {
+        if (hasEmptyKey) {
+            visitor.visit(EMPTY, emptyKeyValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[2 * oldKeys.length];
+        values = new long[2 * oldValues.length];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
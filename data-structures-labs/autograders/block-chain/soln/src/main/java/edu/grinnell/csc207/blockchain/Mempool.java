@@ -0,0 +1,139 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A pool of pending transactions waiting to be mined into a block.
+ *
+ * <p>Transactions may be submitted from any number of threads. Each comes
+ * with a fee that sets its priority: the pool hands out the transactions
+ * with the highest fees first, breaking ties by order of arrival.
+ *
+ * <p>A transaction is only accepted if its sender can afford it from their
+ * balance at the tip of the chain less everything they already owe to
+ * transactions in the pool or in a block being mined. Money received from
+ * pending transactions is not counted until their block is appended, so
+ * the accepted transactions can be mined in any order and in any subset
+ * without overdrawing anyone.
+ *
+ * <p>Blocks of drained transactions are appended through
+ * {@link #append(Block)}, which updates the chain and releases what the
+ * senders owed in one step under the pool's lock, so submitting threads
+ * always see the chain and the pool in agreement. Drained transactions
+ * that never make it into the chain must be handed back through
+ * {@link #release(List)}, or their senders' funds stay reserved for good.
+ */
+public class Mempool {
+    /**
+     * A transaction waiting in the pool.
+     *
+     * @param tx the transaction
+     * @param fee the fee offered for mining the transaction
+     * @param arrival the order in which the transaction arrived at the pool
+     */
+    public record Pending(Transaction tx, long fee, long arrival) { }
+
+    /** Highest fee first, then first come, first served. */
+    private static final Comparator<Pending> PRIORITY =
+        Comparator.comparingLong(Pending::fee).reversed().thenComparingLong(Pending::arrival);
+
+    private final BlockChain chain;
+    private final PriorityQueue<Pending> queue;
+    private final LongLongMap owed;
+    private long arrivals;
+
+    /**
+     * @param chain the chain whose balances transactions are validated against
+     */
+    public Mempool(BlockChain chain) {
+        this.chain = chain;
+        this.queue = new PriorityQueue<>(PRIORITY);
+        this.owed = new LongLongMap();
+        this.arrivals = 0;
+    }
+
+    /**
+     * Adds a transaction to the pool if its sender can afford it. The
+     * signature is checked before taking the pool's lock, so submitting
+     * threads verify signatures in parallel.
+     *
+     * @param tx the transaction
+     * @param fee the fee offered for mining the transaction
+     * @return true iff the transaction was accepted, false if its sender
+     *     cannot afford it
+     * @throws IllegalArgumentException if the transaction was not authorized by its sender
+     */
+    public boolean submit(Transaction tx, long fee) {
+        try {
+            if (!tx.isAuthorized()) {
+                throw new IllegalArgumentException(String.format(
+                    "transfer from account %d is not authorized by its sender", tx.sender()));
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        synchronized (this) {
+            long owes = owed.get(tx.sender()) + tx.amount();
+            if (owes > chain.getBalance(tx.sender())) {
+                return false;
+            }
+            owed.put(tx.sender(), owes);
+            queue.add(new Pending(tx, fee, arrivals++));
+            return true;
+        }
+    }
+
+    /**
+     * Removes the highest-priority transactions from the pool to be mined.
+     * What their senders owe stays reserved until their block is passed to
+     * {@link #append(Block)}.
+     *
+     * @param max the largest number of transactions to remove
+     * @return the removed transactions, highest priority first
+     */
+    public synchronized List<Transaction> drain(int max) {
+        List<Transaction> txs = new ArrayList<>(Math.min(max, queue.size()));
+        while (txs.size() < max && !queue.isEmpty()) {
+            txs.add(queue.poll().tx());
+        }
+        return txs;
+    }
+
+    /**
+     * Appends a block of drained transactions to the chain and releases
+     * what their senders owed. If the chain rejects the block, nothing is
+     * released.
+     *
+     * @param blk a block of transactions previously returned by {@link #drain(int)}
+     */
+    public synchronized void append(Block blk) {
+        chain.append(blk);
+        for (Transaction tx : blk.getTransactions()) {
+            owed.add(tx.sender(), -tx.amount());
+        }
+    }
+
+    /**
+     * Releases what the senders of drained transactions owed when their block
+     * could not be mined or was rejected by the chain. The transactions are
+     * dropped rather than requeued, so their senders may submit them again.
+     *
+     * @param txs transactions previously returned by {@link #drain(int)}
+     */
+    public synchronized void release(List<Transaction> txs) {
+        for (Transaction tx : txs) {
+            owed.add(tx.sender(), -tx.amount());
+        }
+    }
+
+    /**
+     * @return the number of transactions waiting in the pool
+     */
+    public synchronized int size() {
+        return queue.size();
+    }
+}
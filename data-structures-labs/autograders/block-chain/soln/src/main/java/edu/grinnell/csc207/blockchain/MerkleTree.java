@@ -0,0 +1,158 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Merkle tree over the transactions of a block.
+ *
+ * <p>Each leaf is the sha-256 hash of a serialized transaction and each
+ * interior node is the hash of its two children. Leaves and interior nodes
+ * are hashed with different one-byte prefixes so that neither can be passed
+ * off as the other. When a level has an odd number of nodes, the last node
+ * is carried up to the next level unchanged rather than paired with a copy
+ * of itself.
+ *
+ * <p>The root commits to every transaction, so a block header only needs to
+ * contain the root. A {@link Proof} lists the siblings along the path from a
+ * leaf to the root, which lets anyone holding the root check that a single
+ * transaction belongs to the tree with O(log n) hashes.
+ */
+public class MerkleTree {
+    private static final byte LEAF = 0;
+    private static final byte NODE = 1;
+
+    /**
+     * A proof that a transaction is the leaf at some index of a tree.
+     *
+     * @param index the index of the leaf
+     * @param leafCount the number of leaves of the tree
+     * @param siblings the siblings along the path from the leaf to the root,
+     *     bottom-up, skipping levels where the path node is carried up unpaired
+     */
+    public record Proof(int index, int leafCount, List<Hash> siblings) {
+        /**
+         * @param tx a transaction
+         * @param root the root of a Merkle tree
+         * @return true iff this proof shows that tx is a leaf of the tree with that root
+         * @throws NoSuchAlgorithmException if sha-256 is unavailable
+         */
+        public boolean verifies(Transaction tx, Hash root) throws NoSuchAlgorithmException {
+            if (index < 0 || index >= leafCount) {
+                return false;
+            }
+            MessageDigest md = MessageDigest.getInstance("sha-256");
+            Hash cur = leafHash(md, tx);
+            int i = index;
+            int width = leafCount;
+            int next = 0;
+            while (width > 1) {
+                if ((i & 1) == 1) {
+                    if (next == siblings.size()) {
+                        return false;
+                    }
+                    cur = nodeHash(md, siblings.get(next++), cur);
+                } else if (i + 1 < width) {
+                    if (next == siblings.size()) {
+                        return false;
+                    }
+                    cur = nodeHash(md, cur, siblings.get(next++));
+                }
+                i >>>= 1;
+                width = (width + 1) >>> 1;
+            }
+            return next == siblings.size() && cur.equals(root);
+        }
+    }
+
+    /** The levels of the tree, from the leaves up to the root. */
+    private final List<Hash[]> levels;
+
+    /**
+     * @param md a sha-256 digest to hash with
+     * @param transactions the leaves of the tree, of which there must be at least one
+     */
+    public MerkleTree(MessageDigest md, List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            throw new IllegalArgumentException("a Merkle tree needs at least one leaf");
+        }
+        Hash[] level = new Hash[transactions.size()];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = leafHash(md, transactions.get(i));
+        }
+        levels = new ArrayList<>();
+        levels.add(level);
+        while (level.length > 1) {
+            Hash[] up = new Hash[(level.length + 1) >>> 1];
+            for (int i = 0; i < up.length; i++) {
+                up[i] = 2 * i + 1 < level.length
+                    ? nodeHash(md, level[2 * i], level[2 * i + 1])
+                    : level[2 * i];
+            }
+            levels.add(up);
+            level = up;
+        }
+    }
+
+    /**
+     * @param transactions the leaves of the tree, of which there must be at least one
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public MerkleTree(List<Transaction> transactions) throws NoSuchAlgorithmException {
+        this(MessageDigest.getInstance("sha-256"), transactions);
+    }
+
+    /**
+     * @return the root of this tree
+     */
+    public Hash getRoot() {
+        return levels.get(levels.size() - 1)[0];
+    }
+
+    /**
+     * @return the number of leaves of this tree
+     */
+    public int getLeafCount() {
+        return levels.get(0).length;
+    }
+
+    /**
+     * @param index the index of a leaf
+     * @return a proof that the transaction at that index is a leaf of this tree
+     * @throws IndexOutOfBoundsException if the tree has no such leaf
+     */
+    public Proof prove(int index) {
+        if (index < 0 || index >= getLeafCount()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        List<Hash> siblings = new ArrayList<>();
+        int i = index;
+        for (Hash[] level : levels.subList(0, levels.size() - 1)) {
+            int sibling = i ^ 1;
+            if (sibling < level.length) {
+                siblings.add(level[sibling]);
+            }
+            i >>>= 1;
+        }
+        return new Proof(index, getLeafCount(), Collections.unmodifiableList(siblings));
+    }
+
+    private static Hash leafHash(MessageDigest md, Transaction tx) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + tx.serializedSize());
+        buf.put(LEAF);
+        tx.writeTo(buf);
+        md.update(buf.array());
+        return new Hash(md.digest());
+    }
+
+    private static Hash nodeHash(MessageDigest md, Hash left, Hash right) {
+        md.update(NODE);
+        md.update(left.getData());
+        md.update(right.getData());
+        return new Hash(md.digest());
+    }
+}
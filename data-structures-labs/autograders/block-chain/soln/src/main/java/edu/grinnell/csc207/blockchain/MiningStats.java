@@ -0,0 +1,171 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Live statistics of the searches of a {@link ParallelMiner}.
+ *
+ * <p>Workers report the nonces they have tried once per chunk, so the
+ * counts lag the true counts by at most a chunk per worker but updating
+ * them costs nothing measurable. Each search counts its attempts apart, so
+ * searches running at once on the same miner do not disturb each other's
+ * counts; the per-search statistics describe the most recently started
+ * search. They can be read directly or published as a JMX MBean with
+ * {@link #register(String)}, e.g., to watch them in JConsole.
+ */
+public class MiningStats implements MiningStatsMBean {
+    /**
+     * The attempts and timing of a single search.
+     */
+    static final class Progress {
+        private final AtomicLongArray workerAttempts;
+        private final long startNanos;
+        private volatile long endNanos;
+        private volatile boolean mining;
+
+        private Progress(int workers) {
+            this.workerAttempts = new AtomicLongArray(workers);
+            this.startNanos = System.nanoTime();
+            this.mining = true;
+        }
+
+        private long attempts() {
+            long attempts = 0;
+            for (int i = 0; i < workerAttempts.length(); i++) {
+                attempts += workerAttempts.get(i);
+            }
+            return attempts;
+        }
+
+        private double elapsedSeconds() {
+            return Math.max(0, (mining ? System.nanoTime() : endNanos) - startNanos) / 1e9;
+        }
+    }
+
+    private final int workers;
+    private final AtomicLong totalAttempts;
+    private final AtomicLong blocksMined;
+    private final AtomicInteger running;
+    private volatile Progress latest;
+
+    /**
+     * @param workers the number of workers of the miner
+     */
+    MiningStats(int workers) {
+        this.workers = workers;
+        this.totalAttempts = new AtomicLong();
+        this.blocksMined = new AtomicLong();
+        this.running = new AtomicInteger();
+    }
+
+    /**
+     * Records the start of a search.
+     *
+     * @return the progress of the search, for its workers to report to
+     */
+    Progress begin() {
+        Progress search = new Progress(workers);
+        running.incrementAndGet();
+        latest = search;
+        return search;
+    }
+
+    /**
+     * @param search the progress of the search the worker belongs to
+     * @param worker the index of a worker
+     * @param attempts the number of nonces the worker tried since it last reported
+     */
+    void record(Progress search, int worker, long attempts) {
+        search.workerAttempts.addAndGet(worker, attempts);
+        totalAttempts.addAndGet(attempts);
+    }
+
+    /**
+     * Records the end of a search.
+     *
+     * @param search the progress of the search
+     * @param found true iff the search found a nonce
+     */
+    void end(Progress search, boolean found) {
+        search.endNanos = System.nanoTime();
+        search.mining = false;
+        running.decrementAndGet();
+        if (found) {
+            blocksMined.incrementAndGet();
+        }
+    }
+
+    /**
+     * Publishes these statistics on the platform MBean server.
+     *
+     * @param name the name to publish them under
+     * @return the object name they were published under
+     * @throws JMException if they cannot be published
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName =
+            new ObjectName("edu.grinnell.csc207.blockchain:type=MiningStats,name=" + name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public boolean isMining() {
+        return running.get() > 0;
+    }
+
+    @Override
+    public long getAttempts() {
+        Progress search = latest;
+        return search == null ? 0 : search.attempts();
+    }
+
+    @Override
+    public long getTotalAttempts() {
+        return totalAttempts.get();
+    }
+
+    @Override
+    public long getBlocksMined() {
+        return blocksMined.get();
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        Progress search = latest;
+        return search == null ? 0 : search.elapsedSeconds();
+    }
+
+    @Override
+    public double getHashesPerSecond() {
+        Progress search = latest;
+        if (search == null) {
+            return 0;
+        }
+        double elapsed = search.elapsedSeconds();
+        return elapsed > 0 ? search.attempts() / elapsed : 0;
+    }
+
+    @Override
+    public double[] getWorkerHashesPerSecond() {
+        Progress search = latest;
+        double[] rates = new double[workers];
+        double elapsed = search == null ? 0 : search.elapsedSeconds();
+        for (int i = 0; i < rates.length && elapsed > 0; i++) {
+            rates[i] = search.workerAttempts.get(i) / elapsed;
+        }
+        return rates;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d attempts in %.2f s (%.0f hashes/s), %d blocks mined",
+            isMining() ? "mining" : "idle", getAttempts(), getElapsedSeconds(),
+            getHashesPerSecond(), getBlocksMined());
+    }
+}
@@ -0,0 +1,41 @@
+package edu.grinnell.csc207.blockchain;
+
+/**
+ * The management interface of {@link MiningStats}, exposed over JMX.
+ */
+public interface MiningStatsMBean {
+    /**
+     * @return true iff a search is running
+     */
+    boolean isMining();
+
+    /**
+     * @return the number of nonces tried by the current or last search
+     */
+    long getAttempts();
+
+    /**
+     * @return the number of nonces tried by every search so far
+     */
+    long getTotalAttempts();
+
+    /**
+     * @return the number of searches that found a nonce
+     */
+    long getBlocksMined();
+
+    /**
+     * @return the running time of the current or last search, in seconds
+     */
+    double getElapsedSeconds();
+
+    /**
+     * @return the hash rate of the current or last search over all workers
+     */
+    double getHashesPerSecond();
+
+    /**
+     * @return the hash rate of the current or last search of each worker
+     */
+    double[] getWorkerHashesPerSecond();
+}
@@ -0,0 +1,307 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates a network of miners in one process to measure how forks arise
+ * and resolve.
+ *
+ * <p>Each node runs on its own thread with its own {@link BlockTree}. It
+ * mines on the tip of its best chain and sends every block it mines to
+ * every other node over a channel that delivers it after a simulated
+ * latency. A node checks its channel between small batches of nonces, so
+ * it switches to a better tip shortly after one arrives. Blocks found by
+ * different nodes at about the same height fork the network until one
+ * branch gets ahead.
+ *
+ * <p>When a run ends, mining stops, the blocks still in flight are
+ * delivered, and the run reports:
+ * <ul>
+ *   <li>the orphan rate, the fraction of mined blocks not on the final best chain;
+ *   <li>the throughput, the blocks on the final best chain per second;
+ *   <li>the convergence time, how long after a block of the final best
+ *       chain was mined the last node made it part of its own best chain.
+ * </ul>
+ *
+ * <p>Usage: {@code NetworkSimulator [seconds per run] [latency ms] [difficulty...]}
+ * runs every difficulty with 1, 2, 4, 8 and 16 nodes.
+ */
+public class NetworkSimulator {
+    /**
+     * The outcome of a simulated run.
+     *
+     * @param nodes the number of nodes
+     * @param difficulty the difficulty blocks were mined at
+     * @param seconds how long the nodes mined for
+     * @param mined the number of blocks mined by all the nodes
+     * @param height the number of the last block of the final best chain
+     * @param orphanRate the fraction of mined blocks not on the final best chain
+     * @param blocksPerSecond the blocks on the final best chain per second of mining
+     * @param meanConvergence the mean convergence time of the final best chain's blocks,
+     *     in seconds
+     * @param maxConvergence the largest convergence time, in seconds
+     * @param agreed true iff every node ended with the same tip
+     */
+    public record Result(int nodes, int difficulty, double seconds, int mined, int height,
+            double orphanRate, double blocksPerSecond, double meanConvergence,
+            double maxConvergence, boolean agreed) { }
+
+    /** The number of nonces a node tries between checks of its channel. */
+    static final int BATCH = 256;
+
+    private static final double DEFAULT_SECONDS = 5;
+    private static final double DEFAULT_LATENCY_MS = 50;
+    private static final int[] DEFAULT_DIFFICULTIES = {12, 14, 16};
+    private static final int[] NODE_COUNTS = {1, 2, 4, 8, 16};
+
+    private final int nodeCount;
+    private final int difficulty;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final long seed;
+
+    /**
+     * @param nodes the number of nodes
+     * @param difficulty the difficulty blocks are mined at
+     * @param latency the least time a block takes to reach another node, in seconds
+     * @param jitter the most extra time a block may take, chosen uniformly, in seconds
+     * @param seed the seed of the nodes' random choices
+     */
+    public NetworkSimulator(int nodes, int difficulty, double latency, double jitter,
+            long seed) {
+        if (nodes < 1) {
+            throw new IllegalArgumentException("nodes must be positive: " + nodes);
+        }
+        this.nodeCount = nodes;
+        this.difficulty = difficulty;
+        this.latencyNanos = (long) (latency * 1e9);
+        this.jitterNanos = (long) (jitter * 1e9);
+        this.seed = seed;
+    }
+
+    /**
+     * A block in flight to a node.
+     */
+    private static final class Delivery implements Delayed {
+        private final Block block;
+        private final long due;
+
+        Delivery(Block block, long due) {
+            this.block = block;
+            this.due = due;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(due, ((Delivery) other).due);
+        }
+    }
+
+    /**
+     * A simulated miner.
+     */
+    private final class Node implements Runnable {
+        private final int id;
+        private final BlockTree tree;
+        private final DelayQueue<Delivery> inbox;
+        private final Random random;
+        private final Map<Hash, Long> adopted;
+        private final Map<Hash, Long> minedAt;
+        private List<Node> peers;
+        private volatile boolean mining;
+        private volatile boolean running;
+        private int mined;
+
+        Node(int id, Block genesis, Map<Hash, Long> minedAt) throws NoSuchAlgorithmException {
+            this.id = id;
+            this.tree = new BlockTree(genesis);
+            this.inbox = new DelayQueue<>();
+            this.random = new Random(seed + id);
+            this.adopted = new HashMap<>();
+            this.minedAt = minedAt;
+            this.mining = true;
+            this.running = true;
+        }
+
+        /**
+         * @param blk a block mined by this node or delivered to it
+         * @return true iff the block changed this node's tip
+         */
+        private boolean receive(Block blk) {
+            List<Block> joined = tree.add(blk);
+            long now = System.nanoTime();
+            for (Block b : joined) {
+                adopted.put(b.getHash(), now);
+            }
+            return !joined.isEmpty();
+        }
+
+        private void gossip(Block blk) {
+            long now = System.nanoTime();
+            for (Node peer : peers) {
+                if (peer != this) {
+                    long jitter = jitterNanos == 0 ? 0 : (long) (random.nextDouble() * jitterNanos);
+                    peer.inbox.put(new Delivery(blk, now + latencyNanos + jitter));
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Block parent = null;
+                NonceHasher hasher = null;
+                long nonce = 0;
+                while (running) {
+                    boolean changed = false;
+                    for (Delivery d = inbox.poll(); d != null; d = inbox.poll()) {
+                        changed |= receive(d.block);
+                    }
+                    if (!mining) {
+                        Delivery d = inbox.poll(1, TimeUnit.MILLISECONDS);
+                        if (d != null) {
+                            receive(d.block);
+                        }
+                        continue;
+                    }
+                    if (hasher == null || changed) {
+                        parent = tree.getTip();
+                        // N.B., each block carries its miner's id so nodes never mine the same one
+                        hasher = NonceHasher.forBlock(parent.getNum() + 1, id, parent.getHash());
+                        nonce = random.nextLong() >>> 1;
+                    }
+                    for (int i = 0; i < BATCH; i++, nonce++) {
+                        hasher.hash(nonce);
+                        if (hasher.meetsDifficulty(difficulty)) {
+                            Block blk = new Block(parent.getNum() + 1, id, parent.getHash(), nonce,
+                                difficulty);
+                            minedAt.put(blk.getHash(), System.nanoTime());
+                            mined += 1;
+                            receive(blk);
+                            gossip(blk);
+                            hasher = null;
+                            break;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Runs the network for a while and measures it.
+     *
+     * @param seconds how long the nodes mine for
+     * @return the measurements of the run
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     * @throws InterruptedException if interrupted while waiting for the nodes
+     */
+    public Result run(double seconds) throws NoSuchAlgorithmException, InterruptedException {
+        Block genesis = Block.mine(0, 0, null, 0);
+        Map<Hash, Long> minedAt = new ConcurrentHashMap<>();
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(new Node(i, genesis, minedAt));
+        }
+        // N.B., Java 17 has no virtual threads, so each node gets a platform thread
+        List<Thread> threads = new ArrayList<>(nodeCount);
+        for (Node node : nodes) {
+            node.peers = nodes;
+            Thread t = new Thread(node, "node-" + node.id);
+            t.setDaemon(true);
+            threads.add(t);
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        Thread.sleep((long) (seconds * 1000));
+        for (Node node : nodes) {
+            node.mining = false;
+        }
+        // Let the blocks mined just before the end reach every node.
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(latencyNanos + jitterNanos) + 100);
+        for (Node node : nodes) {
+            node.running = false;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return measure(nodes, minedAt, seconds);
+    }
+
+    private Result measure(List<Node> nodes, Map<Hash, Long> minedAt, double seconds) {
+        Block tip = nodes.get(0).tree.getTip();
+        boolean agreed = true;
+        int mined = 0;
+        for (Node node : nodes) {
+            agreed &= node.tree.getTip().getHash().equals(tip.getHash());
+            mined += node.mined;
+        }
+        List<Block> best = nodes.get(0).tree.getBestChain();
+        double total = 0;
+        double max = 0;
+        for (Block blk : best.subList(1, best.size())) {
+            long last = 0;
+            for (Node node : nodes) {
+                last = Math.max(last, node.adopted.getOrDefault(blk.getHash(), 0L));
+            }
+            double convergence = (last - minedAt.get(blk.getHash())) / 1e9;
+            total += convergence;
+            max = Math.max(max, convergence);
+        }
+        int height = tip.getNum();
+        return new Result(nodeCount, difficulty, seconds, mined, height,
+            mined == 0 ? 0 : (double) (mined - height) / mined, height / seconds,
+            height == 0 ? 0 : total / height, max, agreed);
+    }
+
+    /**
+     * @param args the seconds per run, the latency in milliseconds and the difficulties
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     * @throws InterruptedException if interrupted while waiting for a run
+     */
+    public static void main(String[] args) throws NoSuchAlgorithmException, InterruptedException {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_SECONDS;
+        double latency = (args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_LATENCY_MS)
+            / 1000;
+        int[] difficulties = DEFAULT_DIFFICULTIES;
+        if (args.length > 2) {
+            difficulties = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                difficulties[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%d available processors, %.0f ms latency, %.0f s per run%n",
+            Runtime.getRuntime().availableProcessors(), latency * 1000, seconds);
+        System.out.printf("%5s %10s %7s %7s %8s %9s %10s %10s %7s%n", "nodes", "difficulty",
+            "mined", "height", "orphans", "blocks/s", "mean conv", "max conv", "agreed");
+        for (int difficulty : difficulties) {
+            for (int nodes : NODE_COUNTS) {
+                NetworkSimulator sim =
+                    new NetworkSimulator(nodes, difficulty, latency, latency / 2, nodes);
+                Result r = sim.run(seconds);
+                System.out.printf("%5d %10d %7d %7d %7.1f%% %9.2f %9.3fs %9.3fs %7s%n",
+                    r.nodes(), r.difficulty(), r.mined(), r.height(), 100 * r.orphanRate(),
+                    r.blocksPerSecond(), r.meanConvergence(), r.maxConvergence(), r.agreed());
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A proof-of-work hasher specialized for trying many nonces against one block.
+ *
+ * <p>The hashed message of a block is a fixed prefix followed by the 8-byte
+ * nonce. The prefix is serialized once into a scratch buffer; each call to
+ * {@link #hash(long)} only overwrites the nonce bytes, feeds the buffer to a
+ * reused {@link MessageDigest} and digests into a reused output array, so
+ * trying a nonce allocates nothing.
+ *
+ * <p>A prefix that spans whole {@value #BLOCK_BYTES}-byte compression
+ * blocks, as a batched header's 72 bytes of number, amount, previous hash
+ * and Merkle root do, has those blocks absorbed once into a midstate
+ * digest that each nonce clones and finishes. The clone allocates, but
+ * skipping one of the two compressions of an 80-byte header is still about
+ * a third faster. A single-amount header, 48 bytes with its nonce, fits in
+ * one block and is hashed whole. Hash functions whose digests cannot be
+ * cloned are always hashed whole.
+ */
+class NonceHasher {
+    /** The size of a compression block of sha-256 and blake3. */
+    static final int BLOCK_BYTES = 64;
+
+    private final MessageDigest md;
+    private final MessageDigest midstate;
+    private final byte[] message;
+    private final int nonceOffset;
+    private final int tailOffset;
+    private final byte[] digest = new byte[32];
+
+    /**
+     * @param prefix the bytes hashed before the nonce
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    NonceHasher(byte[] prefix) throws NoSuchAlgorithmException {
+        this(prefix, PowHash.SHA_256);
+    }
+
+    /**
+     * @param prefix the bytes hashed before the nonce
+     * @param algorithm the hash function to hash with
+     * @throws NoSuchAlgorithmException if the hash function is unavailable
+     */
+    NonceHasher(byte[] prefix, PowHash algorithm) throws NoSuchAlgorithmException {
+        this.md = algorithm.newDigest();
+        this.message = new byte[prefix.length + 8];
+        this.nonceOffset = prefix.length;
+        System.arraycopy(prefix, 0, message, 0, prefix.length);
+        this.midstate = absorb(algorithm, message, prefix.length / BLOCK_BYTES * BLOCK_BYTES);
+        this.tailOffset = midstate == null ? 0 : prefix.length / BLOCK_BYTES * BLOCK_BYTES;
+    }
+
+    /**
+     * @param algorithm the hash function
+     * @param message the message
+     * @param length the number of leading bytes of the message to absorb
+     * @return a cloneable digest that has absorbed the leading bytes, or
+     *     null if there are none or the digest cannot be cloned
+     * @throws NoSuchAlgorithmException if the hash function is unavailable
+     */
+    private static MessageDigest absorb(PowHash algorithm, byte[] message, int length)
+            throws NoSuchAlgorithmException {
+        if (length == 0) {
+            return null;
+        }
+        MessageDigest base = algorithm.newDigest();
+        base.update(message, 0, length);
+        try {
+            base.clone();
+            return base;
+        } catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @return a hasher for the nonces of the block with the given contents
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    static NonceHasher forBlock(int num, int amount, Hash prevHash)
+            throws NoSuchAlgorithmException {
+        return forBlock(num, amount, prevHash, null);
+    }
+
+    /**
+     * @param num the block number
+     * @param amount the transaction amount, or the total amount of a batch
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param merkleRoot the root of the block's transactions, or null for a single-amount block
+     * @return a hasher for the nonces of the block with the given header
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    static NonceHasher forBlock(int num, int amount, Hash prevHash, Hash merkleRoot)
+            throws NoSuchAlgorithmException {
+        return forBlock(num, amount, prevHash, merkleRoot, PowHash.SHA_256);
+    }
+
+    /**
+     * @param num the block number
+     * @param amount the transaction amount, or the total amount of a batch
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param merkleRoot the root of the block's transactions, or null for a single-amount block
+     * @param algorithm the hash function of the block's chain
+     * @return a hasher for the nonces of the block with the given header
+     * @throws NoSuchAlgorithmException if the hash function is unavailable
+     */
+    static NonceHasher forBlock(int num, int amount, Hash prevHash, Hash merkleRoot,
+            PowHash algorithm) throws NoSuchAlgorithmException {
+        byte[] prev = prevHash == null ? new byte[0] : prevHash.getData();
+        byte[] root = merkleRoot == null ? new byte[0] : merkleRoot.getData();
+        byte[] prefix = new byte[8 + prev.length + root.length];
+        putInt(prefix, 0, num);
+        putInt(prefix, 4, amount);
+        System.arraycopy(prev, 0, prefix, 8, prev.length);
+        System.arraycopy(root, 0, prefix, 8 + prev.length, root.length);
+        return new NonceHasher(prefix, algorithm);
+    }
+
+    private static void putInt(byte[] buf, int off, int x) {
+        buf[off] = (byte) (x >>> 24);
+        buf[off + 1] = (byte) (x >>> 16);
+        buf[off + 2] = (byte) (x >>> 8);
+        buf[off + 3] = (byte) x;
+    }
+
+    /**
+     * Hashes the prefix followed by the given nonce. The digest is available
+     * through {@link #meetsDifficulty(int)} and {@link #digestInto(byte[])} until the
+     * next call.
+     *
+     * @param nonce the candidate nonce
+     */
+    void hash(long nonce) {
+        putInt(message, nonceOffset, (int) (nonce >>> 32));
+        putInt(message, nonceOffset + 4, (int) nonce);
+        try {
+            MessageDigest d = midstate == null ? md : (MessageDigest) midstate.clone();
+            d.update(message, tailOffset, message.length - tailOffset);
+            d.digest(digest, 0, digest.length);
+        } catch (DigestException | CloneNotSupportedException e) {
+            // N.B., cannot happen: the output array is exactly one digest long,
+            // and the midstate was cloned once already
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param difficulty the required number of leading zero bits
+     * @return true iff the last digest starts with at least that many zero bits
+     */
+    boolean meetsDifficulty(int difficulty) {
+        return Hash.leadingZeroBits(digest) >= difficulty;
+    }
+
+    /**
+     * @param out the array to copy the 32-byte digest into
+     */
+    void digestInto(byte[] out) {
+        System.arraycopy(digest, 0, out, 0, digest.length);
+    }
+}
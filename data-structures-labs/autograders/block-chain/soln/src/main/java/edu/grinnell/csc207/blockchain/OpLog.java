@@ -0,0 +1,250 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The commands of a driver session, read from a text script or a binary op
+ * log, for {@link BatchRunner} to replay.
+ *
+ * <p>A script has one command per line, with the answers the interactive
+ * driver would prompt for on the same line:
+ * <pre>
+ *   mine &lt;transactions&gt;
+ *   append &lt;transactions&gt; &lt;nonce&gt;
+ *   remove
+ *   submit &lt;transaction&gt; &lt;fee&gt;
+ *   assemble
+ *   check
+ *   verify
+ *   audit
+ *   balance &lt;account&gt;
+ * </pre>
+ * where transactions are written as for the driver's {@code mine} command.
+ * Blank lines and lines starting with {@code #} are ignored.
+ *
+ * <p>A binary log is a sequence of ops, each laid out as
+ * <pre>
+ *   byte type | int length | payload
+ * </pre>
+ * where the payload of a {@code mine} or {@code append} is its transactions
+ * (an int count followed by the transactions, or -1 followed by a single
+ * amount) and, for an append, a long nonce; of a {@code submit}, its
+ * transaction and a long fee; and of a {@code balance}, a long account.
+ * Transactions are serialized as in the ledger, so unlike a script a binary
+ * log can carry signed transactions. A payload may be at most
+ * {@link #MAX_OP_BYTES} long.
+ */
+public final class OpLog {
+    /** The kinds of command. */
+    public enum Type { MINE, APPEND, REMOVE, SUBMIT, ASSEMBLE, CHECK, VERIFY, AUDIT, BALANCE }
+
+    /** The longest payload of an op, so a corrupt length cannot exhaust memory. */
+    public static final int MAX_OP_BYTES = 1 << 24;
+
+    /**
+     * A single command.
+     *
+     * @param type the kind of command
+     * @param amount the amount between Alice and Bob of a single-amount block
+     * @param transactions the transactions of a batched block or of a submit,
+     *     or null for a single-amount block or a command without any
+     * @param value the nonce of an append, the fee of a submit or the account
+     *     of a balance, and otherwise 0
+     */
+    public record Op(Type type, int amount, List<Transaction> transactions, long value) {
+        /**
+         * @param type the kind of command, which takes no arguments
+         */
+        public Op(Type type) {
+            this(type, 0, null, 0);
+        }
+    }
+
+    private static final int SINGLE_AMOUNT = -1;
+
+    private OpLog() { }
+
+    /**
+     * @param line a line of a script
+     * @return the command of the line, or null if the line is blank or a comment
+     * @throws IllegalArgumentException if the line is not a valid command
+     */
+    public static Op parse(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        String[] words = trimmed.split("\\s+", 2);
+        String rest = words.length > 1 ? words[1] : "";
+        Type type;
+        try {
+            type = Type.valueOf(words[0].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("not a valid command: " + words[0], e);
+        }
+        switch (type) {
+            case MINE:
+                return blockOp(type, rest, 0);
+            case APPEND: {
+                int split = rest.lastIndexOf(' ');
+                if (split < 0) {
+                    throw new IllegalArgumentException("append needs transactions and a nonce");
+                }
+                return blockOp(type, rest.substring(0, split),
+                    Long.parseLong(rest.substring(split + 1)));
+            }
+            case SUBMIT: {
+                String[] args = rest.split("\\s+");
+                if (args.length != 2) {
+                    throw new IllegalArgumentException("submit needs a transaction and a fee");
+                }
+                return new Op(type, 0, List.of(BlockChainDriver.parseTransaction(args[0])),
+                    Long.parseLong(args[1]));
+            }
+            case BALANCE:
+                return new Op(type, 0, null, Long.parseLong(rest));
+            default:
+                if (!rest.isEmpty()) {
+                    throw new IllegalArgumentException(words[0] + " takes no arguments");
+                }
+                return new Op(type);
+        }
+    }
+
+    private static Op blockOp(Type type, String txs, long nonce) {
+        if (txs.isBlank()) {
+            throw new IllegalArgumentException(type.name().toLowerCase() + " needs transactions");
+        }
+        return BlockChainDriver.isSingleAmount(txs)
+            ? new Op(type, Integer.parseInt(txs.trim()), null, nonce)
+            : new Op(type, 0, BlockChainDriver.parseTransactions(txs), nonce);
+    }
+
+    /**
+     * Writes a command to a binary log.
+     *
+     * @param out the log
+     * @param op the command
+     * @throws IOException if the log cannot be written
+     */
+    public static void write(DataOutputStream out, Op op) throws IOException {
+        int length = 0;
+        switch (op.type()) {
+            case MINE:
+            case APPEND:
+                length = 4 + (op.transactions() == null ? 4 : sizeOf(op.transactions()))
+                    + (op.type() == Type.APPEND ? 8 : 0);
+                break;
+            case SUBMIT:
+                length = op.transactions().get(0).serializedSize() + 8;
+                break;
+            case BALANCE:
+                length = 8;
+                break;
+            default:
+                break;
+        }
+        if (length > MAX_OP_BYTES) {
+            throw new IOException(String.format(
+                "%s op of %d bytes is longer than %d", op.type().name().toLowerCase(), length,
+                MAX_OP_BYTES));
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        switch (op.type()) {
+            case MINE:
+            case APPEND:
+                if (op.transactions() == null) {
+                    buf.putInt(SINGLE_AMOUNT);
+                    buf.putInt(op.amount());
+                } else {
+                    buf.putInt(op.transactions().size());
+                    for (Transaction tx : op.transactions()) {
+                        tx.writeTo(buf);
+                    }
+                }
+                if (op.type() == Type.APPEND) {
+                    buf.putLong(op.value());
+                }
+                break;
+            case SUBMIT:
+                op.transactions().get(0).writeTo(buf);
+                buf.putLong(op.value());
+                break;
+            case BALANCE:
+                buf.putLong(op.value());
+                break;
+            default:
+                break;
+        }
+        out.writeByte(op.type().ordinal());
+        out.writeInt(length);
+        out.write(buf.array());
+    }
+
+    private static int sizeOf(List<Transaction> txs) {
+        int size = 0;
+        for (Transaction tx : txs) {
+            size += tx.serializedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Reads the next command of a binary log.
+     *
+     * @param in the log
+     * @return the command, or null at the end of the log
+     * @throws IOException if the log cannot be read or the command is malformed
+     */
+    public static Op read(DataInputStream in) throws IOException {
+        int ordinal = in.read();
+        if (ordinal < 0) {
+            return null;
+        }
+        Type[] types = Type.values();
+        int length = in.readInt();
+        if (ordinal >= types.length || length < 0 || length > MAX_OP_BYTES) {
+            throw new IOException("malformed op: type " + ordinal + ", length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        ByteBuffer buf = ByteBuffer.wrap(payload);
+        Type type = types[ordinal];
+        try {
+            switch (type) {
+                case MINE:
+                case APPEND: {
+                    int count = buf.getInt();
+                    if (count == SINGLE_AMOUNT) {
+                        int amount = buf.getInt();
+                        return new Op(type, amount, null, type == Type.APPEND ? buf.getLong() : 0);
+                    }
+                    if (count < 0 || count > buf.remaining() / Transaction.MIN_BYTES) {
+                        throw new IOException("malformed op: " + count + " transactions");
+                    }
+                    List<Transaction> txs = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        txs.add(Transaction.readFrom(buf));
+                    }
+                    return new Op(type, 0, txs, type == Type.APPEND ? buf.getLong() : 0);
+                }
+                case SUBMIT: {
+                    Transaction tx = Transaction.readFrom(buf);
+                    return new Op(type, 0, List.of(tx), buf.getLong());
+                }
+                case BALANCE:
+                    return new Op(type, 0, null, buf.getLong());
+                default:
+                    return new Op(type);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("malformed " + type.name().toLowerCase() + " op", e);
+        }
+    }
+}
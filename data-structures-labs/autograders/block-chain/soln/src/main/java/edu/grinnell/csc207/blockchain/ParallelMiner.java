@@ -0,0 +1,328 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A miner that searches the nonce space of a block on several threads at once.
+ *
+ * <p>The nonce space is handed out as a queue of fixed-size ranges: each
+ * worker repeatedly claims the next unclaimed range and scans it in
+ * increasing order. Because ranges are claimed in increasing order, a worker
+ * that finds a valid nonce lets every other worker abandon all nonces above
+ * it, so in {@link Mode#LOWEST} mode the search returns exactly the nonce that
+ * the serial miner in {@link Block} would find.
+ *
+ * <p>A search runs in the background and completes a {@link CompletableFuture};
+ * the blocking {@code mine} methods simply wait for it. Its progress is
+ * published through the miner's {@link MiningStats}.
+ */
+public class ParallelMiner {
+    /**
+     * How a parallel search picks its answer.
+     */
+    public enum Mode {
+        /** Return the smallest valid nonce, just like serial mining. */
+        LOWEST,
+        /** Return whichever valid nonce is found first. */
+        FIRST_FOUND
+    }
+
+    /** The number of nonces claimed by a worker at a time. */
+    static final long CHUNK_SIZE = 1 << 14;
+
+    private static final long NOT_FOUND = Long.MAX_VALUE;
+
+    private final int threads;
+    private final Mode mode;
+    private final PowHash algorithm;
+    private final ExecutorService pool;
+    private final MiningStats stats;
+
+    /**
+     * @param threads the number of worker threads to mine with
+     * @param mode how the search picks among valid nonces
+     * @param algorithm the hash function to mine with
+     */
+    public ParallelMiner(int threads, Mode mode, PowHash algorithm) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        this.mode = mode;
+        this.algorithm = algorithm;
+        this.stats = new MiningStats(threads);
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "miner");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @param threads the number of worker threads to mine with
+     * @param mode how the search picks among valid nonces
+     */
+    public ParallelMiner(int threads, Mode mode) {
+        this(threads, mode, PowHash.SHA_256);
+    }
+
+    /**
+     * @param threads the number of worker threads to mine with
+     */
+    public ParallelMiner(int threads) {
+        this(threads, Mode.LOWEST);
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return the search mode of this miner
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the hash function this miner mines with
+     */
+    public PowHash getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Mines a block with the given contents at the default difficulty.
+     *
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @return the mined block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public Block mine(int num, int amount, Hash prevHash) throws NoSuchAlgorithmException {
+        return mine(num, amount, prevHash, Hash.DEFAULT_DIFFICULTY);
+    }
+
+    /**
+     * Mines a block with the given contents.
+     *
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param difficulty the number of leading zero bits the hash must have
+     * @return the mined block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public Block mine(int num, int amount, Hash prevHash, int difficulty)
+            throws NoSuchAlgorithmException {
+        return await(mineAsync(num, amount, prevHash, difficulty));
+    }
+
+    /**
+     * Mines a block carrying a batch of transactions.
+     *
+     * @param num the block number
+     * @param transactions the transactions of the block, of which there must be at least one
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param difficulty the number of leading zero bits the hash must have
+     * @return the mined block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public Block mine(int num, List<Transaction> transactions, Hash prevHash, int difficulty)
+            throws NoSuchAlgorithmException {
+        return await(mineAsync(num, transactions, prevHash, difficulty));
+    }
+
+    /**
+     * Starts mining a block with the given contents in the background.
+     * Cancelling the returned future, or letting it time out with
+     * {@link CompletableFuture#orTimeout(long, TimeUnit)}, stops the search.
+     *
+     * @param num the block number
+     * @param amount the transaction amount
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param difficulty the number of leading zero bits the hash must have
+     * @return a future completed with the mined block
+     */
+    public CompletableFuture<Block> mineAsync(int num, int amount, Hash prevHash,
+            int difficulty) {
+        return search(num, amount, prevHash, null,
+            nonce -> new Block(num, amount, prevHash, nonce, difficulty, algorithm), difficulty);
+    }
+
+    /**
+     * Starts mining a block carrying a batch of transactions in the
+     * background. Cancelling the returned future, or letting it time out
+     * with {@link CompletableFuture#orTimeout(long, TimeUnit)}, stops the
+     * search.
+     *
+     * @param num the block number
+     * @param transactions the transactions of the block, of which there must be at least one
+     * @param prevHash the previous block's hash, or null for the first block
+     * @param difficulty the number of leading zero bits the hash must have
+     * @return a future completed with the mined block
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public CompletableFuture<Block> mineAsync(int num, List<Transaction> transactions,
+            Hash prevHash, int difficulty) throws NoSuchAlgorithmException {
+        List<Transaction> txs = List.copyOf(transactions);
+        Hash root = new MerkleTree(txs).getRoot();
+        int amount = Block.totalAmount(txs);
+        return search(num, amount, prevHash, root,
+            nonce -> new Block(num, txs, prevHash, nonce, difficulty, algorithm), difficulty);
+    }
+
+    /**
+     * @return the live statistics of this miner's searches
+     */
+    public MiningStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Builds the block found by a search.
+     */
+    @FunctionalInterface
+    private interface BlockBuilder {
+        Block build(long nonce) throws NoSuchAlgorithmException;
+    }
+
+    private CompletableFuture<Block> search(int num, int amount, Hash prevHash, Hash merkleRoot,
+            BlockBuilder builder, int difficulty) {
+        Search search = new Search(stats.begin());
+        CompletableFuture<Block> result = new CompletableFuture<>();
+        // N.B., however the future completes, including by cancellation or
+        // timeout, the workers stop at their next nonce
+        result.whenComplete((blk, e) -> search.cancel());
+        AtomicInteger running = new AtomicInteger(threads);
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            pool.execute(() -> {
+                try {
+                    search.run(worker, num, amount, prevHash, merkleRoot, difficulty);
+                } catch (NoSuchAlgorithmException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        finish(search, builder, result);
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    private void finish(Search search, BlockBuilder builder, CompletableFuture<Block> result) {
+        long nonce = search.best.get();
+        stats.end(search.progress, nonce != NOT_FOUND && !result.isDone());
+        if (result.isDone()) {
+            return;
+        } else if (nonce == NOT_FOUND) {
+            result.completeExceptionally(new IllegalStateException("no valid nonce exists"));
+        } else {
+            try {
+                result.complete(builder.build(nonce));
+            } catch (NoSuchAlgorithmException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static Block await(CompletableFuture<Block> future) throws NoSuchAlgorithmException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("mining was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NoSuchAlgorithmException nsae) {
+                throw nsae;
+            }
+            throw new IllegalStateException("mining failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops the worker threads of this miner. The miner may not be used afterwards.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The state shared by the workers of a single search.
+     */
+    private class Search {
+        private final AtomicLong nextChunk = new AtomicLong(0);
+        private final AtomicLong best = new AtomicLong(NOT_FOUND);
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private final MiningStats.Progress progress;
+
+        private Search(MiningStats.Progress progress) {
+            this.progress = progress;
+        }
+
+        private void cancel() {
+            cancelled.set(true);
+        }
+
+        private boolean isDone(long nonce) {
+            return cancelled.get() || nonce >= best.get();
+        }
+
+        private void found(long nonce) {
+            if (mode == Mode.FIRST_FOUND) {
+                best.compareAndSet(NOT_FOUND, nonce);
+                cancel();
+            } else {
+                long cur = best.get();
+                while (nonce < cur && !best.compareAndSet(cur, nonce)) {
+                    cur = best.get();
+                }
+            }
+        }
+
+        private void run(int worker, int num, int amount, Hash prevHash, Hash merkleRoot,
+                int difficulty) throws NoSuchAlgorithmException {
+            NonceHasher hasher =
+                NonceHasher.forBlock(num, amount, prevHash, merkleRoot, algorithm);
+            while (true) {
+                long start = nextChunk.getAndIncrement() * CHUNK_SIZE;
+                if (start < 0 || isDone(start)) {
+                    return;
+                }
+                long end = start + CHUNK_SIZE;
+                long nonce = start;
+                try {
+                    for (; nonce < end; nonce++) {
+                        if (isDone(nonce)) {
+                            return;
+                        }
+                        hasher.hash(nonce);
+                        if (hasher.meetsDifficulty(difficulty)) {
+                            found(nonce);
+                            nonce += 1;
+                            return;
+                        }
+                    }
+                } finally {
+                    stats.record(progress, worker, nonce - start);
+                }
+            }
+        }
+    }
+}
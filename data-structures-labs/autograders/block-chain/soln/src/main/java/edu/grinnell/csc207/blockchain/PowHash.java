@@ -0,0 +1,84 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The hash functions a chain's proof of work may use.
+ *
+ * <p>Every block header of a chain is hashed with the function chosen for
+ * the chain when its first block was mined; a {@link BlockStore} records the
+ * choice in the ledger's header. Merkle trees over transactions are always
+ * built with sha-256. All of the functions produce 256-bit hashes.
+ */
+public enum PowHash {
+    /** SHA-256, the function of the original assignment. */
+    SHA_256("sha-256", 1),
+    /** SHA-512 truncated to 256 bits, which is faster on 64-bit CPUs. */
+    SHA_512_256("sha-512/256", 2),
+    /** BLAKE3, in the pure-Java implementation of {@link Blake3}. */
+    BLAKE3("blake3", 3);
+
+    private final String name;
+    private final byte code;
+
+    PowHash(String name, int code) {
+        this.name = name;
+        this.code = (byte) code;
+    }
+
+    /**
+     * @return a new digest computing this hash function
+     * @throws NoSuchAlgorithmException if the JDK does not provide this hash function
+     */
+    public MessageDigest newDigest() throws NoSuchAlgorithmException {
+        return this == BLAKE3 ? new Blake3() : MessageDigest.getInstance(name);
+    }
+
+    /**
+     * @return the name of this hash function, as accepted by {@link #forName(String)}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the byte identifying this hash function in a ledger
+     */
+    byte getCode() {
+        return code;
+    }
+
+    /**
+     * @param name the name of a hash function, ignoring case
+     * @return the hash function with that name
+     * @throws IllegalArgumentException if there is no such hash function
+     */
+    public static PowHash forName(String name) {
+        for (PowHash h : values()) {
+            if (h.name.equalsIgnoreCase(name)) {
+                return h;
+            }
+        }
+        throw new IllegalArgumentException("unknown hash function: " + name);
+    }
+
+    /**
+     * @param code the byte identifying a hash function in a ledger
+     * @return the hash function with that code
+     * @throws IllegalArgumentException if there is no such hash function
+     */
+    static PowHash forCode(byte code) {
+        for (PowHash h : values()) {
+            if (h.code == code) {
+                return h;
+            }
+        }
+        throw new IllegalArgumentException("unknown hash function code: " + code);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
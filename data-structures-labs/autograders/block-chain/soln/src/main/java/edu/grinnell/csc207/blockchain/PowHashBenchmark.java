@@ -0,0 +1,78 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Measures each {@link PowHash} on a single thread: how many nonces a
+ * {@link NonceHasher} tries per second while mining, and how many block
+ * hashes are recomputed per second while verifying.
+ *
+ * <p>Usage: {@code PowHashBenchmark [seconds per measurement]}
+ */
+public class PowHashBenchmark {
+    private static final double DEFAULT_SECONDS = 3;
+    private static final int BATCH = 1 << 12;
+
+    /**
+     * @param algorithm a hash function
+     * @param seconds how long to measure for
+     * @return the nonces tried per second
+     * @throws NoSuchAlgorithmException if the hash function is unavailable
+     */
+    private static double mineRate(PowHash algorithm, double seconds)
+            throws NoSuchAlgorithmException {
+        NonceHasher hasher = NonceHasher.forBlock(1, 42, new Hash(new byte[32]), null, algorithm);
+        long nonce = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < BATCH; i++, nonce++) {
+                hasher.hash(nonce);
+            }
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < seconds * 1e9);
+        return nonce / (elapsed / 1e9);
+    }
+
+    /**
+     * @param algorithm a hash function
+     * @param seconds how long to measure for
+     * @return the blocks whose hashes are recomputed per second
+     * @throws NoSuchAlgorithmException if the hash function is unavailable
+     */
+    private static double verifyRate(PowHash algorithm, double seconds)
+            throws NoSuchAlgorithmException {
+        Block blk = Block.mine(1, 42, new Hash(new byte[32]), 8, algorithm);
+        MessageDigest md = algorithm.newDigest();
+        long verified = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                if (!blk.hashMatches(md)) {
+                    throw new IllegalStateException("a block failed to verify");
+                }
+            }
+            verified += BATCH;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < seconds * 1e9);
+        return verified / (elapsed / 1e9);
+    }
+
+    /**
+     * @param args the seconds to run each measurement for
+     * @throws NoSuchAlgorithmException if a hash function is unavailable
+     */
+    public static void main(String[] args) throws NoSuchAlgorithmException {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_SECONDS;
+        System.out.printf("%-12s %14s %14s%n", "function", "mined/s", "verified/s");
+        for (PowHash algorithm : PowHash.values()) {
+            // N.B., warm up each function so its measurements are not of the JIT
+            mineRate(algorithm, seconds / 3);
+            verifyRate(algorithm, seconds / 3);
+            System.out.printf("%-12s %14.0f %14.0f%n", algorithm,
+                mineRate(algorithm, seconds), verifyRate(algorithm, seconds));
+        }
+    }
+}
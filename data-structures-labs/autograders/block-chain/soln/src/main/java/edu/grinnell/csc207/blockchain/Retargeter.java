@@ -0,0 +1,176 @@
+package edu.grinnell.csc207.blockchain;
+
+/**
+ * Chooses the difficulty of the next block from how long recent blocks took
+ * to mine.
+ *
+ * <p>Mining a block at difficulty {@code d} takes about {@code 2^d} hashes,
+ * so the hash rate over a sliding window of observed mining times is the sum
+ * of {@code 2^d} over the window divided by the total time. The next
+ * difficulty is the one whose expected mining time at that rate is closest
+ * to the target, moving at most {@link #MAX_STEP} bits per block so a single
+ * lucky or unlucky block cannot swing the difficulty wildly.
+ */
+public class Retargeter {
+    /** The most the difficulty may change by after a single block. */
+    public static final int MAX_STEP = 2;
+
+    /**
+     * The observations of a retargeter as of some moment, to be restored
+     * when the blocks mined since are removed from the chain.
+     */
+    public static final class Window {
+        private final int[] difficulties;
+        private final long[] nanos;
+        private final int count;
+        private final int next;
+
+        private Window(int[] difficulties, long[] nanos, int count, int next) {
+            this.difficulties = difficulties;
+            this.nanos = nanos;
+            this.count = count;
+            this.next = next;
+        }
+    }
+
+    private static final Window EMPTY = new Window(new int[0], new long[0], 0, 0);
+
+    private final int initialDifficulty;
+    private final int minDifficulty;
+    private final int maxDifficulty;
+    private final long targetNanos;
+    private final int[] difficulties;
+    private final long[] nanos;
+    private int count;
+    private int next;
+
+    /**
+     * @param initialDifficulty the difficulty of the first block
+     * @param minDifficulty the smallest difficulty a block may have
+     * @param maxDifficulty the largest difficulty a block may have
+     * @param targetNanos the desired mining time of a block, in nanoseconds, which
+     *     must be positive unless the window is empty
+     * @param window the number of recent mining times to retarget from
+     */
+    public Retargeter(int initialDifficulty, int minDifficulty, int maxDifficulty,
+            long targetNanos, int window) {
+        if (minDifficulty < 0 || maxDifficulty > 256 || minDifficulty > maxDifficulty) {
+            throw new IllegalArgumentException(String.format(
+                "invalid difficulty range [%d, %d]", minDifficulty, maxDifficulty));
+        } else if (initialDifficulty < minDifficulty || initialDifficulty > maxDifficulty) {
+            throw new IllegalArgumentException(
+                "initial difficulty out of range: " + initialDifficulty);
+        } else if (window < 0) {
+            throw new IllegalArgumentException("negative window: " + window);
+        } else if (window > 0 && targetNanos <= 0) {
+            throw new IllegalArgumentException("non-positive target time: " + targetNanos);
+        }
+        this.initialDifficulty = initialDifficulty;
+        this.minDifficulty = minDifficulty;
+        this.maxDifficulty = maxDifficulty;
+        this.targetNanos = targetNanos;
+        this.difficulties = new int[window];
+        this.nanos = new long[window];
+        this.count = 0;
+        this.next = 0;
+    }
+
+    /**
+     * @param difficulty the difficulty every block must have
+     * @return a retargeter that never changes the difficulty
+     */
+    public static Retargeter fixed(int difficulty) {
+        return new Retargeter(difficulty, difficulty, difficulty, 0, 0);
+    }
+
+    /**
+     * @return the difficulty of the first block
+     */
+    public int getInitialDifficulty() {
+        return initialDifficulty;
+    }
+
+    /**
+     * @return the smallest difficulty a block may have
+     */
+    public int getMinDifficulty() {
+        return minDifficulty;
+    }
+
+    /**
+     * @param current the difficulty of a block
+     * @return the least difficulty the block after it may have, as the
+     *     difficulty drops by at most {@link #MAX_STEP} bits per block
+     */
+    public int minNextDifficulty(int current) {
+        return clamp(current - MAX_STEP);
+    }
+
+    private int clamp(long difficulty) {
+        return (int) Math.max(minDifficulty, Math.min(maxDifficulty, difficulty));
+    }
+
+    /**
+     * Records how long a block took to mine, evicting the oldest observation
+     * once the window is full.
+     *
+     * @param difficulty the difficulty the block was mined at
+     * @param elapsedNanos the time mining took, in nanoseconds
+     */
+    public synchronized void observe(int difficulty, long elapsedNanos) {
+        if (difficulties.length == 0) {
+            return;
+        }
+        difficulties[next] = difficulty;
+        nanos[next] = Math.max(elapsedNanos, 1);
+        next = (next + 1) % difficulties.length;
+        count = Math.min(count + 1, difficulties.length);
+    }
+
+    /**
+     * @return the observations made so far
+     */
+    public synchronized Window save() {
+        if (count == 0) {
+            return EMPTY;
+        }
+        return new Window(difficulties.clone(), nanos.clone(), count, next);
+    }
+
+    /**
+     * Forgets every observation made since the given window was saved.
+     *
+     * @param window observations previously returned by {@link #save()}
+     */
+    public synchronized void restore(Window window) {
+        if (window.count == 0) {
+            count = 0;
+            next = 0;
+            return;
+        }
+        System.arraycopy(window.difficulties, 0, difficulties, 0, difficulties.length);
+        System.arraycopy(window.nanos, 0, nanos, 0, nanos.length);
+        count = window.count;
+        next = window.next;
+    }
+
+    /**
+     * @param current the difficulty of the most recent block
+     * @return the difficulty of the next block
+     */
+    public synchronized int nextDifficulty(int current) {
+        if (count == 0) {
+            return clamp(current);
+        }
+        double work = 0;
+        double time = 0;
+        for (int i = 0; i < count; i++) {
+            work += Math.scalb(1.0, difficulties[i]);
+            time += nanos[i];
+        }
+        double ideal = Math.log(work / time * targetNanos) / Math.log(2);
+        long step = Math.round(ideal) - current;
+        step = Math.max(-MAX_STEP, Math.min(MAX_STEP, step));
+        return clamp(current + step);
+    }
+}
@@ -0,0 +1,75 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how many Ed25519 transaction signatures a {@link SignatureVerifier}
+ * checks per second, for each pool size from one thread up to the number
+ * of available processors.
+ *
+ * <p>Usage: {@code SignatureBenchmark [transactions] [seconds per pool size]}
+ */
+public class SignatureBenchmark {
+    private static final int DEFAULT_TRANSACTIONS = 4096;
+    private static final double DEFAULT_SECONDS = 3;
+    private static final int KEY_PAIRS = 64;
+
+    /**
+     * @param count the number of transactions to sign
+     * @return transactions signed by a handful of key pairs
+     * @throws NoSuchAlgorithmException if Ed25519 is unavailable
+     */
+    private static List<Transaction> signedTransactions(int count)
+            throws NoSuchAlgorithmException {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance(Transaction.SIGNATURE_ALGORITHM);
+        List<KeyPair> keys = new ArrayList<>(KEY_PAIRS);
+        for (int i = 0; i < KEY_PAIRS; i++) {
+            keys.add(gen.generateKeyPair());
+        }
+        List<Transaction> txs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            txs.add(Transaction.sign(keys.get(i % KEY_PAIRS), i, i % 1000));
+        }
+        return txs;
+    }
+
+    /**
+     * @param args the number of transactions and the seconds to run each pool size for
+     * @throws NoSuchAlgorithmException if sha-256 or Ed25519 is unavailable
+     */
+    public static void main(String[] args) throws NoSuchAlgorithmException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TRANSACTIONS;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_SECONDS;
+        List<Transaction> txs = signedTransactions(count);
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d signed transactions, %d available processors%n", count, cores);
+        // N.B., warm up the verifier so the first measurement is not of the JIT
+        new SignatureVerifier(new ForkJoinPool(1)).verify(txs);
+        for (int threads = 1; ; threads = Math.min(2 * threads, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            SignatureVerifier verifier = new SignatureVerifier(pool);
+            long verified = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                if (!verifier.verify(txs)) {
+                    throw new IllegalStateException("a signature failed to verify");
+                }
+                verified += count;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < seconds * 1e9);
+            pool.shutdown();
+            double rate = verified / (elapsed / 1e9);
+            System.out.printf("%3d threads: %10.0f signatures/s, %10.0f signatures/s/thread%n",
+                threads, rate, rate / threads);
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+}
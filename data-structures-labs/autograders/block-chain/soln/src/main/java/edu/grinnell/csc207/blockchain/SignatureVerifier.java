@@ -0,0 +1,104 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Checks that every transaction of a sequence was authorized by its sender.
+ *
+ * <p>Verifying an Ed25519 signature costs far more than hashing a block
+ * header, so the signatures are checked in parallel by splitting the
+ * sequence in halves with fork/join, each leaf task using its own
+ * {@link Signature} instance. Unsigned transfers between Alice and Bob cost
+ * nothing to check.
+ */
+public class SignatureVerifier {
+    /** Ranges of at most this many transactions are checked on a single thread. */
+    static final int THRESHOLD = 64;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param pool the pool to verify signatures in
+     */
+    public SignatureVerifier(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Creates a verifier that verifies signatures in the common pool.
+     */
+    public SignatureVerifier() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param txs a sequence of transactions
+     * @return true iff every transaction of the sequence was authorized by its sender
+     * @throws NoSuchAlgorithmException if sha-256 or Ed25519 is unavailable
+     */
+    public boolean verify(List<Transaction> txs) throws NoSuchAlgorithmException {
+        return findUnauthorized(txs) < 0;
+    }
+
+    /**
+     * @param txs a sequence of transactions
+     * @return the index of the first transaction not authorized by its sender, or -1
+     * @throws NoSuchAlgorithmException if sha-256 or Ed25519 is unavailable
+     */
+    public int findUnauthorized(List<Transaction> txs) throws NoSuchAlgorithmException {
+        // N.B., fail here rather than inside every task
+        Signature.getInstance(Transaction.SIGNATURE_ALGORITHM);
+        KeyFactory.getInstance(Transaction.SIGNATURE_ALGORITHM);
+        if (txs.stream().allMatch(tx -> tx.authorization() == null && tx.isLegacy())) {
+            return -1;
+        }
+        return pool.invoke(new VerifyTask(txs, 0, txs.size()));
+    }
+
+    /**
+     * Verifies the signatures of a range of transactions, returning the
+     * index of the first unauthorized transaction in the range or -1.
+     */
+    @SuppressWarnings("serial")
+    private static class VerifyTask extends RecursiveTask<Integer> {
+        private final List<Transaction> txs;
+        private final int lo;
+        private final int hi;
+
+        VerifyTask(List<Transaction> txs, int lo, int hi) {
+            this.txs = txs;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (hi - lo <= THRESHOLD) {
+                try {
+                    Signature verifier = Signature.getInstance(Transaction.SIGNATURE_ALGORITHM);
+                    KeyFactory keys = KeyFactory.getInstance(Transaction.SIGNATURE_ALGORITHM);
+                    for (int i = lo; i < hi; i++) {
+                        if (!txs.get(i).isAuthorized(verifier, keys)) {
+                            return i;
+                        }
+                    }
+                    return -1;
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            int mid = (lo + hi) >>> 1;
+            VerifyTask left = new VerifyTask(txs, lo, mid);
+            VerifyTask right = new VerifyTask(txs, mid, hi);
+            right.fork();
+            int bad = left.compute();
+            int rightBad = right.join();
+            return bad >= 0 ? bad : rightBad;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package edu.grinnell.csc207.blockchain;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+
+/**
+ * A single transfer of money between two accounts recorded in a block.
+ *
+ * <p>Accounts are identified by number. The two parties of the original
+ * assignment are the accounts {@link #ALICE} and {@link #BOB}, and
+ * {@link #Transaction(int)} builds a transfer between them from a signed
+ * amount the way a single-amount block records it.
+ *
+ * <p>Any other account belongs to an Ed25519 key pair: its number is taken
+ * from the sha-256 hash of the public key (see {@link #accountOf(PublicKey)}).
+ * A transfer out of such an account must carry an {@link Authorization},
+ * the sender's public key and their signature over the transfer, made with
+ * {@link #sign(KeyPair, long, int)}. Only transfers between Alice and Bob
+ * need no signature, as in the original assignment: anyone may move money
+ * between the two, but not out of their accounts into any other. Other
+ * accounts are funded by the first block of a chain instead (see
+ * {@link BlockChain#BlockChain(java.util.List, ParallelMiner, Retargeter)}).
+ *
+ * @param sender the account the money is taken from
+ * @param receiver the account the money is paid to
+ * @param amount the amount transferred, which is never negative
+ * @param authorization the sender's signature over the transfer, or null if unsigned
+ */
+public record Transaction(long sender, long receiver, int amount, Authorization authorization) {
+    /** The account of Alice, who receives the first block's amount. */
+    public static final long ALICE = 0;
+
+    /** The account of Bob. */
+    public static final long BOB = 1;
+
+    /** The signature algorithm transactions are signed with. */
+    public static final String SIGNATURE_ALGORITHM = "Ed25519";
+
+    /** The number of bytes an unsigned transaction serializes to. */
+    static final int MIN_BYTES = 8 + 8 + 4 + 1 + 1;
+
+    /**
+     * A sender's public key and signature over a transfer.
+     *
+     * @param publicKey the X.509 encoding of the sender's public key
+     * @param signature the signature over the sender, receiver and amount
+     */
+    public record Authorization(byte[] publicKey, byte[] signature) {
+        /**
+         * @param publicKey the X.509 encoding of the sender's public key
+         * @param signature the signature over the sender, receiver and amount
+         */
+        public Authorization {
+            if (publicKey.length > 255 || signature.length > 255) {
+                throw new IllegalArgumentException("authorization too long");
+            }
+            publicKey = publicKey.clone();
+            signature = signature.clone();
+        }
+
+        @Override
+        public byte[] publicKey() {
+            return publicKey.clone();
+        }
+
+        @Override
+        public byte[] signature() {
+            return signature.clone();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Authorization a
+                && Arrays.equals(publicKey, a.publicKey) && Arrays.equals(signature, a.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(publicKey) + Arrays.hashCode(signature);
+        }
+
+        @Override
+        public String toString() {
+            return "Authorization[" + new Hash(Arrays.copyOf(signature, 8)) + "...]";
+        }
+    }
+
+    /**
+     * @param sender the account the money is taken from
+     * @param receiver the account the money is paid to
+     * @param amount the amount transferred, which must not be negative
+     * @param authorization the sender's signature over the transfer, or null if unsigned
+     */
+    public Transaction {
+        if (amount < 0) {
+            throw new IllegalArgumentException("negative amount: " + amount);
+        }
+    }
+
+    /**
+     * @param sender the account the money is taken from
+     * @param receiver the account the money is paid to
+     * @param amount the amount transferred, which must not be negative
+     */
+    public Transaction(long sender, long receiver, int amount) {
+        this(sender, receiver, amount, null);
+    }
+
+    /**
+     * @param amount the amount transferred from Bob to Alice (negative if from Alice to Bob)
+     */
+    public Transaction(int amount) {
+        this(amount < 0 ? ALICE : BOB, amount < 0 ? BOB : ALICE, Math.abs(amount));
+    }
+
+    /**
+     * @param key an Ed25519 public key
+     * @return the number of the account belonging to the key
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    public static long accountOf(PublicKey key) throws NoSuchAlgorithmException {
+        return accountOf(key.getEncoded());
+    }
+
+    private static long accountOf(byte[] encodedKey) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("sha-256").digest(encodedKey);
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    /**
+     * Creates a transfer out of the account of a key pair, signed with its
+     * private key.
+     *
+     * @param keys an Ed25519 key pair
+     * @param receiver the account the money is paid to
+     * @param amount the amount transferred, which must not be negative
+     * @return the signed transaction
+     * @throws NoSuchAlgorithmException if sha-256 or Ed25519 is unavailable
+     * @throws IllegalArgumentException if the keys are not Ed25519 keys
+     */
+    public static Transaction sign(KeyPair keys, long receiver, int amount)
+            throws NoSuchAlgorithmException {
+        byte[] publicKey = keys.getPublic().getEncoded();
+        long sender = accountOf(publicKey);
+        Signature signer = Signature.getInstance(SIGNATURE_ALGORITHM);
+        try {
+            signer.initSign(keys.getPrivate());
+            signer.update(signedBytes(sender, receiver, amount));
+            return new Transaction(sender, receiver, amount,
+                new Authorization(publicKey, signer.sign()));
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException("not an Ed25519 key pair", e);
+        } catch (SignatureException e) {
+            // N.B., cannot happen: the signer was just initialized
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param sender the account the money is taken from
+     * @param receiver the account the money is paid to
+     * @param amount the amount transferred
+     * @return the bytes the sender signs
+     */
+    private static byte[] signedBytes(long sender, long receiver, int amount) {
+        ByteBuffer buf = ByteBuffer.allocate(8 + 8 + 4);
+        buf.putLong(sender);
+        buf.putLong(receiver);
+        buf.putInt(amount);
+        return buf.array();
+    }
+
+    /**
+     * @return true iff this is a transfer between Alice and Bob, which needs no signature
+     */
+    public boolean isLegacy() {
+        return (sender == ALICE || sender == BOB) && (receiver == ALICE || receiver == BOB);
+    }
+
+    /**
+     * Checks that this transfer was authorized by its sender: either it is
+     * between Alice and Bob, or the transaction carries a valid signature
+     * by the key the sender's account belongs to.
+     *
+     * @param verifier an Ed25519 signature to verify with, which is reinitialized
+     * @param keys a factory for Ed25519 keys
+     * @return true iff this transfer was authorized by its sender
+     * @throws NoSuchAlgorithmException if sha-256 is unavailable
+     */
+    boolean isAuthorized(Signature verifier, KeyFactory keys) throws NoSuchAlgorithmException {
+        if (authorization == null) {
+            return isLegacy();
+        }
+        byte[] publicKey = authorization.publicKey;
+        if (accountOf(publicKey) != sender) {
+            return false;
+        }
+        try {
+            verifier.initVerify(keys.generatePublic(new X509EncodedKeySpec(publicKey)));
+            verifier.update(signedBytes(sender, receiver, amount));
+            return verifier.verify(authorization.signature);
+        } catch (InvalidKeySpecException | InvalidKeyException | SignatureException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true iff this transfer was authorized by its sender
+     * @throws NoSuchAlgorithmException if sha-256 or Ed25519 is unavailable
+     */
+    public boolean isAuthorized() throws NoSuchAlgorithmException {
+        return authorization == null
+            ? isLegacy()
+            : isAuthorized(Signature.getInstance(SIGNATURE_ALGORITHM),
+                KeyFactory.getInstance(SIGNATURE_ALGORITHM));
+    }
+
+    /**
+     * @return the number of bytes this transaction serializes to
+     */
+    int serializedSize() {
+        return authorization == null
+            ? MIN_BYTES
+            : MIN_BYTES + authorization.publicKey.length + authorization.signature.length;
+    }
+
+    /**
+     * @param buf the buffer to serialize this transaction into
+     */
+    void writeTo(ByteBuffer buf) {
+        buf.putLong(sender);
+        buf.putLong(receiver);
+        buf.putInt(amount);
+        if (authorization == null) {
+            buf.put((byte) 0);
+            buf.put((byte) 0);
+        } else {
+            buf.put((byte) authorization.publicKey.length);
+            buf.put(authorization.publicKey);
+            buf.put((byte) authorization.signature.length);
+            buf.put(authorization.signature);
+        }
+    }
+
+    /**
+     * @param buf a buffer positioned at a serialized transaction
+     * @return the transaction read from the buffer
+     */
+    static Transaction readFrom(ByteBuffer buf) {
+        long sender = buf.getLong();
+        long receiver = buf.getLong();
+        int amount = buf.getInt();
+        byte[] publicKey = new byte[Byte.toUnsignedInt(buf.get())];
+        buf.get(publicKey);
+        byte[] signature = new byte[Byte.toUnsignedInt(buf.get())];
+        buf.get(signature);
+        return publicKey.length == 0 && signature.length == 0
+            ? new Transaction(sender, receiver, amount)
+            : new Transaction(sender, receiver, amount, new Authorization(publicKey, signature));
+    }
+}
@@ -0,0 +1,154 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BatchRunnerTests {
+    @TempDir
+    Path dir;
+
+    private static final String SCRIPT = String.join("\n",
+        "# pay Bob, then let him pay Alice back",
+        "mine -20",
+        "",
+        "mine 3 0:1:4",
+        "submit 1:0:5 2",
+        "assemble",
+        "remove",
+        "append -1 0",
+        "check",
+        "audit",
+        "balance 1");
+
+    private static BlockChain chain() throws NoSuchAlgorithmException {
+        return new BlockChain(100, null, Retargeter.fixed(4));
+    }
+
+    private static BatchRunner runner(BlockChain chain, ByteArrayOutputStream out) {
+        Mempool pool = new Mempool(chain);
+        return new BatchRunner(chain, pool, new BlockAssembler(chain, pool, 10),
+            new PrintStream(out, true));
+    }
+
+    private static List<OpLog.Op> parse(String script) {
+        List<OpLog.Op> ops = new ArrayList<>();
+        for (String line : script.split("\n")) {
+            OpLog.Op op = OpLog.parse(line);
+            if (op != null) {
+                ops.add(op);
+            }
+        }
+        return ops;
+    }
+
+    @Test
+    public void runsScripts() throws IOException, NoSuchAlgorithmException {
+        BlockChain chain = chain();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BatchRunner runner = runner(chain, out);
+        assertEquals(9, runner.runScript(new BufferedReader(new StringReader(SCRIPT))));
+        // N.B., a nonce of 0 is all but certain not to meet the difficulty
+        assertEquals(1, runner.getFailures(OpLog.Type.APPEND));
+        assertEquals(2, runner.getCount(OpLog.Type.MINE));
+        assertEquals(0, runner.getFailures(OpLog.Type.CHECK));
+        assertTrue(runner.getTotalNanos(OpLog.Type.MINE) > 0);
+        assertEquals(3, chain.getSize());
+        assertEquals(79, chain.getBalance(Transaction.ALICE));
+        assertTrue(out.toString().contains("Account 1: 21"));
+        runner.printTimings();
+        assertTrue(out.toString().contains("assemble"));
+    }
+
+    @Test
+    public void reportsBadScriptLines() throws NoSuchAlgorithmException {
+        BatchRunner runner = runner(chain(), new ByteArrayOutputStream());
+        IOException e = assertThrows(IOException.class,
+            () -> runner.runScript(new BufferedReader(new StringReader("check\nmine\n"))));
+        assertTrue(e.getMessage().startsWith("line 2"));
+        assertThrows(IllegalArgumentException.class, () -> OpLog.parse("frobnicate"));
+        assertThrows(IllegalArgumentException.class, () -> OpLog.parse("submit 5"));
+        assertThrows(IllegalArgumentException.class, () -> OpLog.parse("audit now"));
+        assertNull(OpLog.parse("   "));
+    }
+
+    @Test
+    public void roundTripsBinaryLogs() throws IOException, NoSuchAlgorithmException {
+        KeyPair keys = KeyPairGenerator.getInstance(Transaction.SIGNATURE_ALGORITHM)
+            .generateKeyPair();
+        List<OpLog.Op> ops = new ArrayList<>(parse(SCRIPT));
+        ops.add(new OpLog.Op(OpLog.Type.SUBMIT, 0,
+            List.of(Transaction.sign(keys, Transaction.BOB, 1)), 7));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (OpLog.Op op : ops) {
+                OpLog.write(out, op);
+            }
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        List<OpLog.Op> read = new ArrayList<>();
+        for (OpLog.Op op = OpLog.read(in); op != null; op = OpLog.read(in)) {
+            read.add(op);
+        }
+        assertEquals(ops, read);
+
+        BlockChain chain = chain();
+        BatchRunner runner = runner(chain, new ByteArrayOutputStream());
+        in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(ops.size(), runner.runLog(in));
+        assertEquals(3, chain.getSize());
+        // The signed transfer's sender has no money.
+        assertEquals(1, runner.getFailures(OpLog.Type.SUBMIT));
+
+        byte[] torn = bytes.toByteArray();
+        DataInputStream truncated = new DataInputStream(
+            new ByteArrayInputStream(torn, 0, torn.length - 3));
+        assertThrows(IOException.class,
+            () -> runner(chain(), new ByteArrayOutputStream()).runLog(truncated));
+
+        // A corrupt length is refused before anything is allocated for it.
+        ByteArrayOutputStream huge = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(huge)) {
+            out.writeByte(OpLog.Type.MINE.ordinal());
+            out.writeInt(Integer.MAX_VALUE);
+        }
+        assertThrows(IOException.class, () -> OpLog.read(
+            new DataInputStream(new ByteArrayInputStream(huge.toByteArray()))));
+    }
+
+    @Test
+    public void carriesOnPastAFullLedger() throws IOException, NoSuchAlgorithmException {
+        try (BlockStore store = BlockStore.open(dir.resolve("ledger.bin"), 1,
+                PowHash.SHA_256, 1000)) {
+            BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4), store);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BatchRunner runner = runner(chain, out);
+            for (int i = 0; i < 30; i++) {
+                runner.run(OpLog.parse("mine -1"));
+            }
+            assertEquals(30, runner.getCount(OpLog.Type.MINE));
+            assertTrue(runner.getFailures(OpLog.Type.MINE) > 0);
+            assertEquals(31 - runner.getFailures(OpLog.Type.MINE), chain.getSize());
+            assertTrue(out.toString().contains("ledger full"));
+        }
+    }
+}
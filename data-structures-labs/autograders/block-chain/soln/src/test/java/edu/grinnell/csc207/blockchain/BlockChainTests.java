@@ -0,0 +1,141 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class BlockChainTests {
+    private static BlockChain easyChain(int initial) throws NoSuchAlgorithmException {
+        return new BlockChain(initial, null, Retargeter.fixed(4));
+    }
+
+    @Test
+    public void getsBlocksByNumber() throws NoSuchAlgorithmException {
+        BlockChain chain = easyChain(500);
+        for (int i = 1; i <= 50; i++) {
+            chain.append(chain.mine(-i));
+        }
+        assertEquals(51, chain.getSize());
+        for (int i = 0; i < chain.getSize(); i++) {
+            assertEquals(i, chain.get(i).getNum());
+        }
+        assertEquals(chain.getHash(), chain.get(50).getHash());
+        assertEquals(chain.get(49).getHash(), chain.get(50).getPrevHash());
+        assertThrows(IndexOutOfBoundsException.class, () -> chain.get(51));
+    }
+
+    @Test
+    public void getsBlocksByHash() throws NoSuchAlgorithmException {
+        BlockChain chain = easyChain(500);
+        for (int i = 1; i <= 50; i++) {
+            chain.append(chain.mine(-i));
+        }
+        for (int i = 0; i < chain.getSize(); i++) {
+            assertEquals(chain.get(i), chain.get(chain.get(i).getHash()));
+        }
+        Hash last = chain.getHash();
+        chain.removeLast();
+        assertNull(chain.get(last));
+        assertNull(chain.get(Block.mine(7, 7, null, 0).getHash()));
+    }
+
+    @Test
+    public void removesDownToGenesis() throws NoSuchAlgorithmException {
+        BlockChain chain = easyChain(100);
+        Hash genesis = chain.getHash();
+        for (int i = 0; i < 10; i++) {
+            chain.append(chain.mine(-1));
+        }
+        for (int i = 10; i > 0; i--) {
+            assertTrue(chain.removeLast());
+            assertEquals(i, chain.getSize());
+        }
+        assertFalse(chain.removeLast());
+        assertEquals(genesis, chain.getHash());
+        chain.append(chain.mine(-1));
+        assertEquals(2, chain.getSize());
+    }
+
+    @Test
+    public void rejectsMisnumberedBlocks() throws NoSuchAlgorithmException {
+        BlockChain chain = easyChain(100);
+        Block blk = Block.mine(2, -1, chain.getHash(), 4);
+        assertThrows(IllegalArgumentException.class, () -> chain.append(blk));
+    }
+
+    @Test
+    public void incrementalValidityTracksRemovals() throws NoSuchAlgorithmException {
+        BlockChain chain = easyChain(100);
+        chain.append(chain.mine(-60));
+        assertTrue(chain.isValidBlockChain());
+        chain.append(chain.mine(-60));
+        assertFalse(chain.isValidBlockChain());
+        chain.append(chain.mine(100));
+        assertFalse(chain.isValidBlockChain());
+        chain.removeLast();
+        chain.removeLast();
+        assertTrue(chain.isValidBlockChain());
+        assertTrue(chain.audit());
+    }
+
+    @Test
+    public void tracksBalancesOfManyAccounts() throws NoSuchAlgorithmException {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance(Transaction.SIGNATURE_ALGORITHM);
+        List<KeyPair> keys = new ArrayList<>();
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            keys.add(gen.generateKeyPair());
+            txs.add(new Transaction(Transaction.ALICE,
+                Transaction.accountOf(keys.get(i).getPublic()), 100));
+        }
+        txs.add(new Transaction(Transaction.ALICE, Transaction.BOB, 1000000 - 200 * 100));
+        BlockChain chain = new BlockChain(txs, null, Retargeter.fixed(4));
+        assertEquals(1000000, chain.totalCash);
+        assertEquals(0, chain.getBalance(Transaction.ALICE));
+        assertEquals(100, chain.getBalance(Transaction.accountOf(keys.get(57).getPublic())));
+        txs.clear();
+        for (int i = 0; i + 1 < keys.size(); i++) {
+            long next = Transaction.accountOf(keys.get(i + 1).getPublic());
+            txs.add(Transaction.sign(keys.get(i), next, 100));
+        }
+        chain.append(chain.mine(txs));
+        assertTrue(chain.isValidBlockChain());
+        long first = Transaction.accountOf(keys.get(0).getPublic());
+        long last = Transaction.accountOf(keys.get(199).getPublic());
+        assertEquals(0, chain.getBalance(first));
+        assertEquals(200, chain.getBalance(last));
+        chain.append(chain.mine(List.of(Transaction.sign(keys.get(0), last, 1))));
+        assertFalse(chain.isValidBlockChain());
+        assertTrue(chain.audit());
+        assertTrue(chain.removeLast());
+        assertTrue(chain.removeLast());
+        assertTrue(chain.isValidBlockChain());
+        assertEquals(100, chain.getBalance(first));
+        assertTrue(chain.audit());
+    }
+
+    @Test
+    public void incrementalStateAgreesWithReplay() throws NoSuchAlgorithmException {
+        Random rand = new Random(207);
+        BlockChain chain = easyChain(50);
+        for (int i = 0; i < 300; i++) {
+            if (rand.nextInt(3) == 0) {
+                chain.removeLast();
+            } else {
+                chain.append(chain.mine(rand.nextInt(61) - 30));
+            }
+            assertTrue(chain.audit(), "after operation " + i);
+        }
+    }
+}
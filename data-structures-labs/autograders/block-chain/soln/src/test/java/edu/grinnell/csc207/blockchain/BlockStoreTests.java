@@ -0,0 +1,193 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BlockStoreTests {
+    @TempDir
+    Path dir;
+
+    private static BlockChain open(BlockStore store)
+            throws NoSuchAlgorithmException, IOException {
+        return new BlockChain(100, null, Retargeter.fixed(4), store);
+    }
+
+    private static List<Hash> hashes(BlockChain chain) {
+        List<Hash> result = new ArrayList<>();
+        for (int i = 0; i < chain.getSize(); i++) {
+            result.add(chain.get(i).getHash());
+        }
+        return result;
+    }
+
+    @Test
+    public void reopensToTheSameChain() throws NoSuchAlgorithmException, IOException {
+        Path ledger = dir.resolve("ledger.bin");
+        List<Hash> expected;
+        try (BlockStore store = BlockStore.open(ledger, 4)) {
+            BlockChain chain = open(store);
+            for (int i = 0; i < 20; i++) {
+                chain.append(chain.mine(-3));
+            }
+            chain.removeLast();
+            chain.removeLast();
+            chain.append(chain.mine(7));
+            expected = hashes(chain);
+        }
+        try (BlockStore store = BlockStore.open(ledger, 4)) {
+            assertEquals(0, store.getTruncatedBytes());
+            BlockChain chain = open(store);
+            assertEquals(expected, hashes(chain));
+            assertEquals(19 + 1, chain.getSize());
+            assertTrue(chain.verify());
+            assertTrue(chain.audit());
+            chain.append(chain.mine(-1));
+        }
+        try (BlockStore store = BlockStore.open(ledger, 4)) {
+            assertEquals(expected.size() + 1, open(store).getSize());
+        }
+    }
+
+    @Test
+    public void refusesToGrowPastItsLimit() throws NoSuchAlgorithmException, IOException {
+        Path ledger = dir.resolve("ledger.bin");
+        List<Hash> expected;
+        try (BlockStore store = BlockStore.open(ledger, 1, PowHash.SHA_256, 1000)) {
+            BlockChain chain = open(store);
+            assertThrows(UncheckedIOException.class, () -> {
+                while (true) {
+                    chain.append(chain.mine(-1));
+                }
+            });
+            expected = hashes(chain);
+        }
+        assertTrue(Files.size(ledger) <= 1000);
+        try (BlockStore store = BlockStore.open(ledger, 1, PowHash.SHA_256, 1000)) {
+            assertEquals(0, store.getTruncatedBytes());
+            assertEquals(expected, hashes(open(store)));
+        }
+        assertThrows(IOException.class, () -> BlockStore.open(ledger, 1, PowHash.SHA_256, 100));
+    }
+
+    @Test
+    public void refusesLedgersWithUnauthorizedTransfers()
+            throws NoSuchAlgorithmException, IOException {
+        Path ledger = dir.resolve("ledger.bin");
+        try (BlockStore store = BlockStore.open(ledger, 4)) {
+            BlockChain chain = open(store);
+            chain.append(chain.mine(-30));
+            // N.B., written behind the chain's back, as a tampered ledger would be
+            Block forged = Block.mine(2, List.of(new Transaction(Transaction.BOB, 5, 10),
+                new Transaction(5, 6, 10)), chain.getHash(), 4);
+            store.append(forged, true);
+        }
+        try (BlockStore store = BlockStore.open(ledger, 4)) {
+            IOException e = assertThrows(IOException.class, () -> open(store));
+            assertTrue(e.getMessage().contains("block 2"));
+        }
+    }
+
+    @Test
+    public void storesBatchedBlocks() throws NoSuchAlgorithmException, IOException {
+        Path ledger = dir.resolve("ledger.bin");
+        List<Transaction> txs = List.of(new Transaction(-5), new Transaction(-40),
+            new Transaction(7));
+        Hash expected;
+        try (BlockStore store = BlockStore.open(ledger, 4)) {
+            BlockChain chain = open(store);
+            chain.append(chain.mine(txs));
+            chain.append(chain.mine(-1));
+            expected = chain.get(1).getMerkleRoot();
+        }
+        try (BlockStore store = BlockStore.open(ledger, 4)) {
+            Block blk = store.getBlocks().get(1).block();
+            assertEquals(txs, blk.getTransactions());
+            assertEquals(expected, blk.getMerkleRoot());
+            BlockChain chain = open(store);
+            assertEquals(3, chain.getSize());
+            assertTrue(chain.verify());
+        }
+    }
+
+    @Test
+    public void truncatesTornTail() throws NoSuchAlgorithmException, IOException {
+        Path ledger = dir.resolve("ledger.bin");
+        try (BlockStore store = BlockStore.open(ledger, 1)) {
+            BlockChain chain = open(store);
+            for (int i = 0; i < 5; i++) {
+                chain.append(chain.mine(-1));
+            }
+        }
+        long intact = Files.size(ledger);
+        try (BlockStore store = BlockStore.open(ledger, 1)) {
+            open(store).append(Block.mine(6, -1, store.getBlocks().get(5).block().getHash(), 4));
+        }
+        // Simulate a crash part way through writing the last record.
+        try (RandomAccessFile file = new RandomAccessFile(ledger.toFile(), "rw")) {
+            file.setLength(Files.size(ledger) - 5);
+        }
+        try (BlockStore store = BlockStore.open(ledger, 1)) {
+            assertTrue(store.getTruncatedBytes() > 0);
+            assertEquals(intact, Files.size(ledger));
+            assertEquals(6, open(store).getSize());
+        }
+    }
+
+    @Test
+    public void truncatesCorruptRecords() throws NoSuchAlgorithmException, IOException {
+        Path ledger = dir.resolve("ledger.bin");
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            BlockChain chain = open(store);
+            for (int i = 0; i < 5; i++) {
+                chain.append(chain.mine(-1));
+            }
+        }
+        long size = Files.size(ledger);
+        try (RandomAccessFile file = new RandomAccessFile(ledger.toFile(), "rw")) {
+            file.seek(size - 10);
+            file.write(0x5a);
+        }
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            assertEquals(5, store.getBlocks().size());
+            assertTrue(Files.size(ledger) < size);
+        }
+    }
+
+    @Test
+    public void rehashesUnverifiedBlocks() throws NoSuchAlgorithmException, IOException {
+        Path ledger = dir.resolve("ledger.bin");
+        Block genesis = Block.mine(0, 100, null, 4);
+        Block next = Block.mine(1, -1, genesis.getHash(), 4);
+        Block forged = new Block(1, -1000, genesis.getHash(), next.getNonce(), 4, next.getHash());
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            store.append(genesis, false);
+            store.append(forged, false);
+        }
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            assertThrows(IOException.class, () -> open(store));
+        }
+        Files.delete(ledger);
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            store.append(genesis, false);
+            store.append(next, false);
+        }
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            BlockChain chain = open(store);
+            assertEquals(2, chain.getSize());
+            assertTrue(chain.verify());
+        }
+    }
+}
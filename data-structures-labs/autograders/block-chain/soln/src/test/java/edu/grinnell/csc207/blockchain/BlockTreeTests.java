@@ -0,0 +1,128 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class BlockTreeTests {
+    /**
+     * @return a branch of blocks mined on top of a block, paying the given amounts
+     */
+    private static List<Block> branch(Block from, int difficulty, int... amounts)
+            throws NoSuchAlgorithmException {
+        List<Block> blocks = new ArrayList<>();
+        Block prev = from;
+        for (int amount : amounts) {
+            prev = Block.mine(prev.getNum() + 1, amount, prev.getHash(), difficulty);
+            blocks.add(prev);
+        }
+        return blocks;
+    }
+
+    @Test
+    public void followsTheMostWork() throws NoSuchAlgorithmException {
+        Block genesis = Block.mine(0, 100, null, 4);
+        BlockTree tree = new BlockTree(genesis);
+        List<Block> a = branch(genesis, 4, -1, -2, -3);
+        List<Block> b = branch(a.get(0), 4, -5, -6, -7);
+        for (Block blk : a) {
+            tree.add(blk);
+        }
+        assertEquals(a.get(2), tree.getTip());
+        // N.B., a branch of equal work does not displace the tip seen first
+        assertEquals(List.of(), tree.add(b.get(0)));
+        assertEquals(List.of(), tree.add(b.get(1)));
+        assertEquals(b, tree.add(b.get(2)));
+        assertEquals(List.of(genesis, a.get(0), b.get(0), b.get(1), b.get(2)),
+            tree.getBestChain());
+        assertEquals(7, tree.size());
+
+        // One block of higher difficulty outweighs two easy ones.
+        List<Block> hard = branch(a.get(2), 7, -9);
+        assertEquals(List.of(a.get(1), a.get(2), hard.get(0)), tree.add(hard.get(0)));
+    }
+
+    @Test
+    public void attachesOrphansWhenTheirParentArrives() throws NoSuchAlgorithmException {
+        Block genesis = Block.mine(0, 100, null, 4);
+        BlockTree tree = new BlockTree(genesis);
+        List<Block> blocks = branch(genesis, 4, -1, -2, -3, -4);
+        assertEquals(List.of(), tree.add(blocks.get(3)));
+        assertEquals(List.of(), tree.add(blocks.get(1)));
+        assertEquals(List.of(), tree.add(blocks.get(2)));
+        assertEquals(3, tree.getOrphanCount());
+        assertEquals(blocks, tree.add(blocks.get(0)));
+        assertEquals(0, tree.getOrphanCount());
+        assertEquals(blocks.get(3), tree.getTip());
+    }
+
+    @Test
+    public void rejectsBadBlocks() throws NoSuchAlgorithmException {
+        Block genesis = Block.mine(0, 100, null, 4);
+        BlockTree tree = new BlockTree(genesis);
+        Block good = Block.mine(1, -1, genesis.getHash(), 4);
+        Block forged = new Block(1, -50, genesis.getHash(), good.getNonce(), 4, good.getHash());
+        assertThrows(IllegalArgumentException.class, () -> tree.add(forged));
+        Block skipped = Block.mine(2, -1, genesis.getHash(), 4);
+        assertThrows(IllegalArgumentException.class, () -> tree.add(skipped));
+        assertEquals(1, tree.size());
+    }
+
+    @Test
+    public void reorganizesChains() throws NoSuchAlgorithmException {
+        BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4));
+        BlockTree tree = new BlockTree(chain.get(0));
+        List<Block> a = branch(chain.get(0), 4, -10, -20);
+        List<Block> b = branch(chain.get(0), 4, -1, -2, -3);
+        for (Block blk : a) {
+            tree.add(blk);
+        }
+        tree.reorganize(chain);
+        assertEquals(30, chain.getBalance(Transaction.BOB));
+        for (Block blk : b) {
+            tree.add(blk);
+        }
+        tree.reorganize(chain);
+        assertEquals(tree.getBestChain().size(), chain.getSize());
+        assertEquals(tree.getTip().getHash(), chain.getHash());
+        assertEquals(6, chain.getBalance(Transaction.BOB));
+        assertTrue(chain.audit());
+    }
+
+    @Test
+    public void failedReorganizationLeavesTheChainAlone() throws NoSuchAlgorithmException {
+        // An absurdly long target time raises the difficulty after every block,
+        // so the chain refuses the second block of an easy branch.
+        BlockChain chain = new BlockChain(100, null,
+            new Retargeter(2, 2, 14, 1_000_000_000_000L, 4));
+        chain.append(chain.mine(-10));
+        List<Hash> before = List.of(chain.get(0).getHash(), chain.getHash());
+        int difficulty = chain.getDifficulty();
+        BlockTree tree = new BlockTree(chain.get(0));
+        tree.add(chain.get(1));
+        for (Block blk : branch(chain.get(0), 2, -1, -2, -3)) {
+            tree.add(blk);
+        }
+        assertEquals(4, tree.getBestChain().size());
+        assertThrows(IllegalArgumentException.class, () -> tree.reorganize(chain));
+        assertEquals(before, List.of(chain.get(0).getHash(), chain.getHash()));
+        assertEquals(difficulty, chain.getDifficulty());
+        assertEquals(10, chain.getBalance(Transaction.BOB));
+        assertTrue(chain.audit());
+    }
+
+    @Test
+    public void simulatedNetworksConverge() throws NoSuchAlgorithmException, InterruptedException {
+        NetworkSimulator.Result r = new NetworkSimulator(3, 8, 0.002, 0.002, 1).run(0.5);
+        assertTrue(r.agreed());
+        assertTrue(r.height() > 0);
+        assertTrue(r.mined() >= r.height());
+        assertTrue(r.orphanRate() >= 0 && r.orphanRate() < 1);
+    }
+}
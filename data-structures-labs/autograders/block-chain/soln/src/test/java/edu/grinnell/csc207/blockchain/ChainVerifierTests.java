@@ -0,0 +1,77 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class ChainVerifierTests {
+    private static List<Block> trivialChain(int size) throws NoSuchAlgorithmException {
+        List<Block> blocks = new ArrayList<>(size);
+        Hash prev = null;
+        for (int i = 0; i < size; i++) {
+            Block blk = Block.mine(i, i == 0 ? 1000 : -1, prev, 0);
+            blocks.add(blk);
+            prev = blk.getHash();
+        }
+        return blocks;
+    }
+
+    private static Block copy(Block blk, int amount, Hash prevHash, Hash hash) {
+        return new Block(blk.getNum(), amount, prevHash, blk.getNonce(), blk.getDifficulty(), hash);
+    }
+
+    @Test
+    public void acceptsIntactChains() throws NoSuchAlgorithmException {
+        ChainVerifier verifier = new ChainVerifier(new ForkJoinPool(4), 0);
+        List<Block> blocks = trivialChain(5000);
+        assertEquals(-1, verifier.findInvalid(blocks));
+        assertTrue(verifier.verify(blocks));
+        assertTrue(verifier.verify(new ArrayList<>()));
+    }
+
+    @Test
+    public void detectsTamperedContents() throws NoSuchAlgorithmException {
+        ChainVerifier verifier = new ChainVerifier(new ForkJoinPool(4), 0);
+        List<Block> blocks = trivialChain(5000);
+        Block victim = blocks.get(3210);
+        blocks.set(3210, copy(victim, 500, victim.getPrevHash(), victim.getHash()));
+        assertEquals(3210, verifier.findInvalid(blocks));
+    }
+
+    @Test
+    public void detectsBrokenLinks() throws NoSuchAlgorithmException {
+        ChainVerifier verifier = new ChainVerifier(new ForkJoinPool(4), 0);
+        List<Block> blocks = trivialChain(5000);
+        // A re-mined block hashes correctly but no longer matches its successor.
+        Block victim = blocks.get(1234);
+        blocks.set(1234, Block.mine(1234, -2, victim.getPrevHash(), 0));
+        assertEquals(1235, verifier.findInvalid(blocks));
+        blocks.set(4000, blocks.get(3999));
+        assertEquals(1235, verifier.findInvalid(blocks));
+    }
+
+    @Test
+    public void enforcesDifficulty() throws NoSuchAlgorithmException {
+        List<Block> blocks = trivialChain(100);
+        assertEquals(0, new ChainVerifier(8).findInvalid(blocks));
+        Block victim = blocks.get(50);
+        blocks.set(50, new Block(50, -1, victim.getPrevHash(), victim.getNonce(), 200,
+            victim.getHash()));
+        assertEquals(50, new ChainVerifier(0).findInvalid(blocks));
+    }
+
+    @Test
+    public void chainVerifiesItself() throws NoSuchAlgorithmException {
+        BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4));
+        for (int i = 0; i < 20; i++) {
+            chain.append(chain.mine(-1));
+        }
+        assertTrue(chain.verify());
+    }
+}
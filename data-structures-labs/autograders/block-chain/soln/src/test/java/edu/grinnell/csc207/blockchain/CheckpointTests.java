@@ -0,0 +1,106 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CheckpointTests {
+    @TempDir
+    Path dir;
+
+    private static void grow(BlockChain chain, int blocks) throws NoSuchAlgorithmException {
+        for (int i = 0; i < blocks; i++) {
+            chain.append(chain.mine(i % 3 == 2 ? 2 : -3));
+        }
+    }
+
+    @Test
+    public void takesCheckpointsEveryFewBlocks() throws NoSuchAlgorithmException {
+        BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4));
+        chain.setCheckpointInterval(5);
+        grow(chain, 12);
+        Checkpoint cp = chain.getCheckpoint();
+        assertEquals(10, cp.getHeight());
+        assertEquals(chain.get(10).getHash(), cp.getTip());
+        chain.removeLast();
+        chain.removeLast();
+        assertEquals(cp, chain.checkpoint());
+        assertEquals(chain.getBalance(Transaction.ALICE), cp.getBalance(Transaction.ALICE));
+        assertEquals(chain.getBalance(Transaction.BOB), cp.getBalance(Transaction.BOB));
+        assertEquals(0, cp.getBalance(42));
+        chain.removeLast();
+        assertNull(chain.getCheckpoint());
+    }
+
+    @Test
+    public void pinsSnapshots() throws NoSuchAlgorithmException, IOException {
+        BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4));
+        grow(chain, 4);
+        Checkpoint cp = chain.checkpoint();
+        Path snapshot = dir.resolve("snapshot.bin");
+        cp.write(snapshot);
+        assertEquals(cp, Checkpoint.read(snapshot, cp.getDigest()));
+        assertThrows(IOException.class, () -> Checkpoint.read(snapshot, cp.getTip()));
+    }
+
+    @Test
+    public void fastSyncsFromCheckpoints() throws NoSuchAlgorithmException, IOException {
+        Path ledger = dir.resolve("ledger.bin");
+        Path snapshot = dir.resolve("snapshot.bin");
+        Checkpoint cp;
+        Hash tip;
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4), store);
+            chain.setCheckpointInterval(10);
+            grow(chain, 25);
+            cp = chain.getCheckpoint();
+            cp.write(snapshot);
+            tip = chain.getHash();
+        }
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            Checkpoint trusted = Checkpoint.read(snapshot, cp.getDigest());
+            BlockChain chain = new BlockChain(null, Retargeter.fixed(4), store, trusted);
+            assertEquals(26, chain.getSize());
+            assertEquals(tip, chain.getHash());
+            assertTrue(chain.getHistoryVerification().join());
+            assertTrue(chain.audit());
+            chain.append(chain.mine(-1));
+            assertTrue(chain.verify());
+        }
+    }
+
+    @Test
+    public void catchesBadHistoryInTheBackground() throws NoSuchAlgorithmException, IOException {
+        Path ledger = dir.resolve("ledger.bin");
+        Checkpoint cp;
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4), store);
+            grow(chain, 8);
+            cp = chain.checkpoint();
+        }
+        LongLongMap forged = cp.getBalances();
+        forged.add(Transaction.BOB, 1000);
+        Checkpoint lie = new Checkpoint(cp.getHeight(), cp.getTip(), -1, forged);
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            BlockChain chain = new BlockChain(null, Retargeter.fixed(4), store, lie);
+            assertEquals(cp.getBalance(Transaction.BOB) + 1000,
+                chain.getBalance(Transaction.BOB));
+            assertFalse(chain.getHistoryVerification().join());
+            assertFalse(chain.audit());
+        }
+        Checkpoint elsewhere = new Checkpoint(cp.getHeight(), cp.getDigest(), -1, forged);
+        try (BlockStore store = BlockStore.open(ledger, 8)) {
+            assertThrows(IOException.class,
+                () -> new BlockChain(null, Retargeter.fixed(4), store, elsewhere));
+        }
+    }
+}
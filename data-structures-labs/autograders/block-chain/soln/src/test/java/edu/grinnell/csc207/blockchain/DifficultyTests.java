@@ -0,0 +1,153 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.jupiter.api.Test;
+
+public class DifficultyTests {
+    private static Hash hash(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return new Hash(bytes);
+    }
+
+    @Test
+    public void countsLeadingZeroBits() {
+        assertEquals(0, hash(0x80, 0).leadingZeroBits());
+        assertEquals(7, hash(0x01, 0).leadingZeroBits());
+        assertEquals(12, hash(0, 0x08).leadingZeroBits());
+        assertEquals(16, hash(0, 0).leadingZeroBits());
+        assertTrue(hash(0, 0x0f).meetsDifficulty(12));
+        assertFalse(hash(0, 0x1f).meetsDifficulty(12));
+    }
+
+    @Test
+    public void minesAtRequestedDifficulty() throws NoSuchAlgorithmException {
+        for (int difficulty = 0; difficulty <= 16; difficulty += 4) {
+            Block blk = Block.mine(1, 10, null, difficulty);
+            assertEquals(difficulty, blk.getDifficulty());
+            assertTrue(blk.getHash().leadingZeroBits() >= difficulty);
+            assertTrue(blk.isValid());
+        }
+    }
+
+    @Test
+    public void serialAndParallelAgreeAtAnyDifficulty() throws NoSuchAlgorithmException {
+        ParallelMiner miner = new ParallelMiner(3);
+        try {
+            for (int difficulty = 1; difficulty <= 18; difficulty++) {
+                assertEquals(Block.mine(2, -5, null, difficulty).getNonce(),
+                    miner.mine(2, -5, null, difficulty).getNonce(), "difficulty " + difficulty);
+            }
+        } finally {
+            miner.shutdown();
+        }
+    }
+
+    @Test
+    public void appendEnforcesRecordedDifficulty() throws NoSuchAlgorithmException {
+        BlockChain chain = new BlockChain(100, null, Retargeter.fixed(8));
+        Block good = chain.mine(-10);
+        long bad = 0;
+        while (new Block(1, -10, chain.getHash(), bad, 8).isValid()) {
+            bad++;
+        }
+        Block forged = new Block(1, -10, chain.getHash(), bad, 8);
+        assertFalse(forged.isValid());
+        assertThrows(IllegalArgumentException.class, () -> chain.append(forged));
+        long easy = 0;
+        while (new Block(1, -10, chain.getHash(), easy, 2).getHash().leadingZeroBits() != 2) {
+            easy++;
+        }
+        Block tooEasy = new Block(1, -10, chain.getHash(), easy, 2);
+        assertTrue(tooEasy.isValid());
+        assertThrows(IllegalArgumentException.class, () -> chain.append(tooEasy));
+        chain.append(good);
+        assertEquals(2, chain.getSize());
+        assertTrue(chain.isValidBlockChain());
+    }
+
+    @Test
+    public void retargetsTowardsTargetTime() {
+        long second = 1_000_000_000L;
+        Retargeter fast = new Retargeter(10, 4, 40, second, 4);
+        // 2^10 hashes in a millisecond: ~2^20 hashes per second
+        fast.observe(10, second / 1000);
+        assertEquals(10 + Retargeter.MAX_STEP, fast.nextDifficulty(10));
+
+        Retargeter slow = new Retargeter(20, 4, 40, second, 4);
+        // 2^20 hashes in 4 seconds: 2^18 hashes per second
+        slow.observe(20, 4 * second);
+        assertEquals(18, slow.nextDifficulty(20));
+
+        Retargeter steady = new Retargeter(16, 4, 40, second, 4);
+        for (int i = 0; i < 10; i++) {
+            steady.observe(16, second);
+        }
+        assertEquals(16, steady.nextDifficulty(16));
+        assertEquals(4, new Retargeter(4, 4, 40, second, 4).nextDifficulty(4));
+    }
+
+    @Test
+    public void chainRetargetsAsItMines() throws NoSuchAlgorithmException {
+        // An absurdly long target time drives the difficulty up after every block.
+        BlockChain chain = new BlockChain(100, null,
+            new Retargeter(2, 2, 12, 1_000_000_000_000L, 4));
+        assertEquals(2, chain.getDifficulty());
+        for (int i = 0; i < 3; i++) {
+            chain.append(chain.mine(-1));
+        }
+        assertTrue(chain.getDifficulty() > 2);
+        assertTrue(chain.isValidBlockChain());
+    }
+
+    @Test
+    public void appendRejectsBlocksBelowRetargetedDifficulty() throws NoSuchAlgorithmException {
+        BlockChain chain = new BlockChain(100, null,
+            new Retargeter(2, 2, 12, 1_000_000_000_000L, 4));
+        chain.append(chain.mine(-1));
+        int expected = chain.getDifficulty();
+        assertTrue(expected > 2);
+        Block easy = Block.mine(2, -1, chain.getHash(), expected - 1);
+        assertThrows(IllegalArgumentException.class, () -> chain.append(easy));
+        assertEquals(2, chain.getSize());
+    }
+
+    @Test
+    public void rejectsNonPositiveTargetTime() {
+        assertThrows(IllegalArgumentException.class, () -> new Retargeter(4, 4, 40, 0, 4));
+        assertThrows(IllegalArgumentException.class, () -> new Retargeter(4, 4, 40, -1, 4));
+        assertEquals(4, Retargeter.fixed(4).getInitialDifficulty());
+    }
+
+    @Test
+    public void fixedDifficultyStaysFixed() throws NoSuchAlgorithmException {
+        assertEquals(8, Retargeter.fixed(8).nextDifficulty(12));
+        BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4));
+        chain.append(Block.mine(1, -1, chain.getHash(), 10));
+        assertEquals(4, chain.getDifficulty());
+        assertEquals(8, Retargeter.fixed(8).minNextDifficulty(12));
+    }
+
+    @Test
+    public void removeLastRestoresTheDifficulty() throws NoSuchAlgorithmException {
+        BlockChain chain = new BlockChain(100, null,
+            new Retargeter(2, 2, 14, 1_000_000_000_000L, 4));
+        assertEquals(2, chain.getDifficulty());
+        chain.append(chain.mine(-1));
+        assertTrue(chain.getDifficulty() > 2);
+        assertTrue(chain.removeLast());
+        assertEquals(2, chain.getDifficulty());
+        Block replacement = Block.mine(1, -2, chain.getHash(), 2);
+        chain.append(replacement);
+        assertEquals(replacement, chain.get(1));
+        assertTrue(chain.verify());
+    }
+}
@@ -0,0 +1,76 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class HashTests {
+    private static byte[] randomBytes(Random rand, int length) {
+        byte[] data = new byte[length];
+        rand.nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void roundTripsBytes() {
+        Random rand = new Random(207);
+        for (int length = 0; length <= Hash.MAX_LENGTH; length++) {
+            byte[] data = randomBytes(rand, length);
+            Hash h = new Hash(data);
+            assertEquals(length, h.length());
+            assertArrayEquals(data, h.getData());
+            assertEquals(Hash.leadingZeroBits(data), h.leadingZeroBits());
+            StringBuilder hex = new StringBuilder();
+            for (byte b : data) {
+                hex.append(String.format("%02x", Byte.toUnsignedInt(b)));
+            }
+            assertEquals(hex.toString(), h.toString());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new Hash(new byte[33]));
+    }
+
+    @Test
+    public void isImmutable() {
+        byte[] data = {1, 2, 3};
+        Hash h = new Hash(data);
+        data[0] = 9;
+        h.getData()[1] = 9;
+        assertEquals("010203", h.toString());
+    }
+
+    @Test
+    public void countsZerosAcrossWords() {
+        for (int zeros = 0; zeros <= 256; zeros++) {
+            byte[] data = new byte[32];
+            if (zeros < 256) {
+                data[zeros / 8] = (byte) (0x80 >>> (zeros % 8));
+            }
+            assertEquals(zeros, new Hash(data).leadingZeroBits());
+        }
+        assertEquals(24, new Hash(new byte[3]).leadingZeroBits());
+    }
+
+    @Test
+    public void equalHashesHaveEqualHashCodes() {
+        Random rand = new Random(351);
+        Set<Hash> seen = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            byte[] data = randomBytes(rand, 32);
+            Hash h = new Hash(data);
+            assertEquals(h, new Hash(data.clone()));
+            assertEquals(h.hashCode(), new Hash(data.clone()).hashCode());
+            seen.add(h);
+            seen.add(new Hash(data));
+        }
+        assertEquals(1000, seen.size());
+        // Trailing zero bytes still make for a different hash.
+        assertNotEquals(new Hash(new byte[] {0, 0}), new Hash(new byte[] {0, 0, 0}));
+    }
+}
@@ -0,0 +1,55 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LongLongMapTests {
+    @Test
+    public void agreesWithHashMap() {
+        Random rand = new Random(207);
+        LongLongMap map = new LongLongMap(0);
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            long key = rand.nextInt(3) == 0 ? rand.nextLong() : rand.nextInt(5000);
+            long value = rand.nextInt(1000) - 500;
+            if (rand.nextBoolean()) {
+                map.put(key, value);
+                expected.put(key, value);
+            } else {
+                assertEquals(expected.merge(key, value, Long::sum), map.add(key, value));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> e : expected.entrySet()) {
+            assertTrue(map.containsKey(e.getKey()));
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        }
+        Map<Long, Long> visited = new HashMap<>();
+        map.forEach((key, value) -> assertEquals(null, visited.put(key, value)));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void handlesEveryKey() {
+        LongLongMap map = new LongLongMap();
+        assertFalse(map.containsKey(Long.MIN_VALUE));
+        assertEquals(0, map.get(Long.MIN_VALUE));
+        assertEquals(5, map.add(Long.MIN_VALUE, 5));
+        assertEquals(7, map.add(Long.MIN_VALUE, 2));
+        map.put(Long.MAX_VALUE, -1);
+        map.put(0, 0);
+        assertTrue(map.containsKey(Long.MIN_VALUE));
+        assertTrue(map.containsKey(0));
+        assertFalse(map.containsKey(1));
+        assertEquals(7, map.get(Long.MIN_VALUE));
+        assertEquals(-1, map.get(Long.MAX_VALUE));
+        assertEquals(3, map.size());
+    }
+}
@@ -0,0 +1,112 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class MempoolTests {
+    private static BlockChain easyChain(int initial) throws NoSuchAlgorithmException {
+        return new BlockChain(initial, null, Retargeter.fixed(4));
+    }
+
+    @Test
+    public void drainsByFeeThenArrival() throws NoSuchAlgorithmException {
+        Mempool pool = new Mempool(easyChain(100));
+        assertTrue(pool.submit(new Transaction(-1), 5));
+        assertTrue(pool.submit(new Transaction(-2), 9));
+        assertTrue(pool.submit(new Transaction(-3), 5));
+        assertTrue(pool.submit(new Transaction(-4), 0));
+        assertTrue(pool.submit(new Transaction(-5), 9));
+        List<Transaction> expected = List.of(new Transaction(-2), new Transaction(-5),
+            new Transaction(-1));
+        assertEquals(expected, pool.drain(3));
+        assertEquals(List.of(new Transaction(-3), new Transaction(-4)), pool.drain(10));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void rejectsWhatPayersCannotAfford() throws NoSuchAlgorithmException {
+        BlockChain chain = easyChain(100);
+        Mempool pool = new Mempool(chain);
+        assertTrue(pool.submit(new Transaction(-60), 0));
+        assertFalse(pool.submit(new Transaction(-60), 100));
+        // Bob is owed 60 but cannot spend it until the block is confirmed.
+        assertFalse(pool.submit(new Transaction(10), 0));
+        BlockAssembler assembler = new BlockAssembler(chain, pool, 10);
+        assembler.assemble();
+        assertTrue(pool.submit(new Transaction(10), 0));
+        assertTrue(pool.submit(new Transaction(-40), 0));
+        assertFalse(pool.submit(new Transaction(-1), 0));
+    }
+
+    @Test
+    public void releasesReservationsWhenAppendFails() throws NoSuchAlgorithmException {
+        boolean[] reject = {true};
+        BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4)) {
+            @Override
+            public void append(Block blk) {
+                if (reject[0]) {
+                    throw new IllegalArgumentException("rejected");
+                }
+                super.append(blk);
+            }
+        };
+        Mempool pool = new Mempool(chain);
+        BlockAssembler assembler = new BlockAssembler(chain, pool, 10);
+        assertTrue(pool.submit(new Transaction(-60), 0));
+        assertThrows(IllegalArgumentException.class, assembler::assemble);
+        assertEquals(1, chain.getSize());
+        assertEquals(0, pool.size());
+        reject[0] = false;
+        assertTrue(pool.submit(new Transaction(-100), 0));
+        assembler.assemble();
+        assertEquals(0, chain.getBalance(Transaction.ALICE));
+    }
+
+    @Test
+    public void assemblesValidBlocksUnderConcurrentLoad()
+            throws NoSuchAlgorithmException, InterruptedException {
+        BlockChain chain = easyChain(10000);
+        Mempool pool = new Mempool(chain);
+        BlockAssembler assembler = new BlockAssembler(chain, pool, 250);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int seed = t;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    int amount = (i + seed) % 3 == 0 ? 7 : -11;
+                    if (pool.submit(new Transaction(amount), (i * 31 + seed) % 17)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        int mined = 0;
+        boolean producing = true;
+        while (producing || pool.size() > 0) {
+            producing = producers.stream().anyMatch(Thread::isAlive);
+            Block blk = assembler.assemble();
+            if (blk != null) {
+                assertTrue(blk.getTransactions().size() <= 250);
+                mined += blk.getTransactions().size();
+            }
+        }
+        assertEquals(accepted.get(), mined);
+        assertTrue(chain.isValidBlockChain());
+        assertTrue(chain.verify());
+        assertNull(assembler.assemble());
+    }
+}
@@ -0,0 +1,111 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class MerkleTreeTests {
+    private static List<Transaction> transactions(int count) {
+        List<Transaction> txs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            txs.add(new Transaction(i % 2 == 0 ? -i : i));
+        }
+        return txs;
+    }
+
+    @Test
+    public void provesEveryLeaf() throws NoSuchAlgorithmException {
+        for (int count = 1; count <= 40; count++) {
+            List<Transaction> txs = transactions(count);
+            MerkleTree tree = new MerkleTree(txs);
+            for (int i = 0; i < count; i++) {
+                MerkleTree.Proof proof = tree.prove(i);
+                assertTrue(proof.verifies(txs.get(i), tree.getRoot()), count + " leaves, " + i);
+                assertTrue(proof.siblings().size() <= 32 - Integer.numberOfLeadingZeros(count));
+            }
+        }
+    }
+
+    @Test
+    public void rejectsBadProofs() throws NoSuchAlgorithmException {
+        List<Transaction> txs = transactions(13);
+        MerkleTree tree = new MerkleTree(txs);
+        MerkleTree.Proof proof = tree.prove(6);
+        assertFalse(proof.verifies(new Transaction(1000), tree.getRoot()));
+        assertFalse(proof.verifies(txs.get(5), tree.getRoot()));
+        assertFalse(proof.verifies(txs.get(6), new MerkleTree(transactions(12)).getRoot()));
+        MerkleTree.Proof moved = new MerkleTree.Proof(7, 13, proof.siblings());
+        assertFalse(moved.verifies(txs.get(6), tree.getRoot()));
+        MerkleTree.Proof truncated = new MerkleTree.Proof(6, 13, proof.siblings().subList(0, 2));
+        assertFalse(truncated.verifies(txs.get(6), tree.getRoot()));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.prove(13));
+        assertThrows(IllegalArgumentException.class, () -> new MerkleTree(List.of()));
+    }
+
+    @Test
+    public void rootCommitsToOrderAndContents() throws NoSuchAlgorithmException {
+        List<Transaction> txs = transactions(8);
+        Hash root = new MerkleTree(txs).getRoot();
+        List<Transaction> swapped = new ArrayList<>(txs);
+        swapped.set(0, txs.get(1));
+        swapped.set(1, txs.get(0));
+        assertNotEquals(root, new MerkleTree(swapped).getRoot());
+        List<Transaction> changed = new ArrayList<>(txs);
+        changed.set(7, new Transaction(8));
+        assertNotEquals(root, new MerkleTree(changed).getRoot());
+        assertEquals(root, new MerkleTree(MessageDigest.getInstance("sha-256"), txs).getRoot());
+    }
+
+    @Test
+    public void minesBatchedBlocks() throws NoSuchAlgorithmException {
+        List<Transaction> txs = transactions(100);
+        Block blk = Block.mine(1, txs, null, 8);
+        assertEquals(txs, blk.getTransactions());
+        assertEquals(new MerkleTree(txs).getRoot(), blk.getMerkleRoot());
+        assertEquals(txs.stream().mapToInt(Transaction::amount).sum(), blk.getAmount());
+        assertTrue(blk.isValid());
+        assertTrue(blk.hashMatches(MessageDigest.getInstance("sha-256")));
+        assertEquals(blk.getHash(), new Block(1, txs, null, blk.getNonce(), 8).getHash());
+        assertTrue(blk.prove(42).verifies(txs.get(42), blk.getMerkleRoot()));
+
+        // A different batch with the same net amount does not match the header.
+        List<Transaction> forged = new ArrayList<>(txs);
+        forged.set(0, new Transaction(forged.get(0).amount() + 1));
+        forged.set(1, new Transaction(forged.get(1).amount() - 1));
+        Block tampered = new Block(1, forged, blk.getMerkleRoot(), null, blk.getNonce(), 8,
+            blk.getHash());
+        assertFalse(tampered.hashMatches(MessageDigest.getInstance("sha-256")));
+
+        Block single = Block.mine(1, 5, null, 4);
+        assertNull(single.getMerkleRoot());
+        assertEquals(List.of(new Transaction(5)), single.getTransactions());
+        assertThrows(IllegalStateException.class, () -> single.prove(0));
+
+        List<Transaction> huge = List.of(new Transaction(Integer.MAX_VALUE), new Transaction(1));
+        assertThrows(IllegalArgumentException.class, () -> Block.mine(1, huge, null, 4));
+    }
+
+    @Test
+    public void chainChecksEveryTransactionOfABatch() throws NoSuchAlgorithmException {
+        BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4));
+        chain.append(chain.mine(List.of(new Transaction(-30), new Transaction(-20))));
+        assertTrue(chain.isValidBlockChain());
+        // Bob cannot spend Alice's money before he receives it, even if the batch nets out.
+        chain.append(chain.mine(List.of(new Transaction(80), new Transaction(-80))));
+        assertFalse(chain.isValidBlockChain());
+        assertTrue(chain.audit());
+        chain.removeLast();
+        assertTrue(chain.isValidBlockChain());
+        assertTrue(chain.verify());
+    }
+}
@@ -0,0 +1,63 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class NonceHasherTests {
+    private static byte[] sha256(byte[] prefix, long nonce) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("sha-256");
+        md.update(prefix);
+        md.update(ByteBuffer.allocate(8).putLong(nonce).array());
+        return md.digest();
+    }
+
+    @Test
+    public void matchesMessageDigestForAllPrefixLengths() throws NoSuchAlgorithmException {
+        Random rand = new Random(207);
+        byte[] out = new byte[32];
+        for (int len = 0; len < 200; len++) {
+            byte[] prefix = new byte[len];
+            rand.nextBytes(prefix);
+            NonceHasher hasher = new NonceHasher(prefix);
+            for (long nonce : new long[] { 0, 1, 255, 1L << 40, -1, rand.nextLong() }) {
+                hasher.hash(nonce);
+                hasher.digestInto(out);
+                assertArrayEquals(sha256(prefix, nonce), out, "prefix length " + len);
+            }
+        }
+    }
+
+    @Test
+    public void matchesBlockHashes() throws NoSuchAlgorithmException {
+        Block genesis = new Block(0, 300, null, 42);
+        NonceHasher hasher = NonceHasher.forBlock(0, 300, null);
+        byte[] out = new byte[32];
+        hasher.hash(42);
+        hasher.digestInto(out);
+        assertEquals(genesis.getHash(), new Hash(out));
+
+        Block next = new Block(1, -150, genesis.getHash(), 9001);
+        hasher = NonceHasher.forBlock(1, -150, genesis.getHash());
+        hasher.hash(9001);
+        hasher.digestInto(out);
+        assertEquals(next.getHash(), new Hash(out));
+
+        // A batched header's prefix spans a whole block, hashed through a midstate.
+        for (PowHash algorithm : PowHash.values()) {
+            Block batch = Block.mine(2, List.of(new Transaction(-5), new Transaction(7)),
+                next.getHash(), 4, algorithm);
+            hasher = NonceHasher.forBlock(2, 12, next.getHash(), batch.getMerkleRoot(), algorithm);
+            hasher.hash(batch.getNonce());
+            hasher.digestInto(out);
+            assertEquals(batch.getHash(), new Hash(out), algorithm.toString());
+        }
+    }
+}
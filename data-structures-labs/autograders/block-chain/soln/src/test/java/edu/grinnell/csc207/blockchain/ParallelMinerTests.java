@@ -0,0 +1,143 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+public class ParallelMinerTests {
+    @Test
+    public void lowestModeMatchesSerialMining() throws NoSuchAlgorithmException {
+        ParallelMiner miner = new ParallelMiner(4);
+        try {
+            Block serial = new Block(0, 300, null);
+            Block parallel = miner.mine(0, 300, null);
+            assertEquals(serial.getNonce(), parallel.getNonce());
+            assertEquals(serial.getHash(), parallel.getHash());
+        } finally {
+            miner.shutdown();
+        }
+    }
+
+    @Test
+    public void firstFoundModeFindsValidNonce() throws NoSuchAlgorithmException {
+        ParallelMiner miner = new ParallelMiner(4, ParallelMiner.Mode.FIRST_FOUND);
+        try {
+            Block blk = miner.mine(1, -150, null);
+            assertEquals(1, blk.getNum());
+            assertEquals(-150, blk.getAmount());
+            assertTrue(blk.getHash().isValid());
+        } finally {
+            miner.shutdown();
+        }
+    }
+
+    @Test
+    public void chainMinesWithParallelMiner() throws NoSuchAlgorithmException {
+        ParallelMiner miner = new ParallelMiner(4);
+        try {
+            BlockChain chain = new BlockChain(350, miner);
+            chain.append(chain.mine(-100));
+            assertEquals(2, chain.getSize());
+            assertTrue(chain.isValidBlockChain());
+        } finally {
+            miner.shutdown();
+        }
+    }
+
+    @Test
+    public void minesInTheBackground() throws Exception {
+        ParallelMiner miner = new ParallelMiner(2);
+        try {
+            CompletableFuture<Block> future = miner.mineAsync(3, 25, null, 16);
+            Block blk = future.get(30, TimeUnit.SECONDS);
+            assertEquals(Block.mine(3, 25, null, 16).getNonce(), blk.getNonce());
+            MiningStats stats = miner.getStats();
+            assertFalse(stats.isMining());
+            assertEquals(1, stats.getBlocksMined());
+            assertTrue(stats.getAttempts() > blk.getNonce());
+            assertEquals(2, stats.getWorkerHashesPerSecond().length);
+        } finally {
+            miner.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelsAndTimesOut() throws Exception {
+        ParallelMiner miner = new ParallelMiner(2);
+        try {
+            // N.B., 200 leading zero bits will never be found
+            CompletableFuture<Block> future = miner.mineAsync(0, 1, null, 200);
+            Thread.sleep(50);
+            assertTrue(miner.getStats().isMining());
+            assertTrue(future.cancel(true));
+            assertThrows(CancellationException.class, future::join);
+            awaitIdle(miner.getStats());
+            assertEquals(0, miner.getStats().getBlocksMined());
+
+            CompletableFuture<Block> timed =
+                miner.mineAsync(0, 1, null, 200).orTimeout(50, TimeUnit.MILLISECONDS);
+            ExecutionException e = assertThrows(ExecutionException.class, timed::get);
+            assertTrue(e.getCause() instanceof TimeoutException);
+            awaitIdle(miner.getStats());
+
+            // The workers are free again for the next search.
+            assertTrue(miner.mineAsync(0, 1, null, 4).get(30, TimeUnit.SECONDS).isValid());
+        } finally {
+            miner.shutdown();
+        }
+    }
+
+    @Test
+    public void keepsConcurrentSearchesApart() throws Exception {
+        ParallelMiner miner = new ParallelMiner(2);
+        try {
+            CompletableFuture<Block> first = miner.mineAsync(0, 1, null, 200);
+            CompletableFuture<Block> second = miner.mineAsync(0, 2, null, 200);
+            Thread.sleep(50);
+            assertTrue(first.cancel(true));
+            Thread.sleep(50);
+            // N.B., the first search ending does not end the second
+            assertTrue(miner.getStats().isMining());
+            assertTrue(second.cancel(true));
+            awaitIdle(miner.getStats());
+            assertEquals(0, miner.getStats().getBlocksMined());
+        } finally {
+            miner.shutdown();
+        }
+    }
+
+    private static void awaitIdle(MiningStats stats) throws InterruptedException {
+        for (int i = 0; i < 1000 && stats.isMining(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(stats.isMining());
+    }
+
+    @Test
+    public void publishesStatsOverJmx() throws Exception {
+        ParallelMiner miner = new ParallelMiner(1);
+        try {
+            miner.mine(0, 1, null, 8);
+            ObjectName name = miner.getStats().register("test");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(name, "BlocksMined"));
+            assertEquals(miner.getStats().getAttempts(), server.getAttribute(name, "Attempts"));
+            server.unregisterMBean(name);
+        } finally {
+            miner.shutdown();
+        }
+    }
+}
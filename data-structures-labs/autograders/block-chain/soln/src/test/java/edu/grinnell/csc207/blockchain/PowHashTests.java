@@ -0,0 +1,130 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PowHashTests {
+    @TempDir
+    Path dir;
+
+    /**
+     * @param length the number of bytes
+     * @return the input of the official BLAKE3 test vectors of that length
+     */
+    private static byte[] vectorInput(int length) {
+        byte[] input = new byte[length];
+        for (int i = 0; i < length; i++) {
+            input[i] = (byte) (i % 251);
+        }
+        return input;
+    }
+
+    private static String blake3(byte[] input) {
+        return HexFormat.of().formatHex(new Blake3().digest(input));
+    }
+
+    @Test
+    public void blake3MatchesTestVectors() {
+        assertEquals("af1349b9f5f9a1a6a0404dea36dcc9499bcb25c9adc112b7cc9a93cae41f3262",
+            blake3(vectorInput(0)));
+        assertEquals("2d3adedff11b61f14c886e35afa036736dcd87a74d27b5c1510225d0f592e213",
+            blake3(vectorInput(1)));
+        assertEquals("42214739f095a406f3fc83deb889744ac00df831c10daa55189b5d121c855af7",
+            blake3(vectorInput(1024)));
+        assertEquals("d00278ae47eb27b34faecf67b4fe263f82d5412916c1ffd97c8cb7fb814b8444",
+            blake3(vectorInput(1025)));
+        assertEquals("6437b3ac38465133ffb63b75273a8db548c558465d79db03fd359c6cd5bd9d85",
+            blake3("abc".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void blake3HashesIncrementally() {
+        byte[] input = vectorInput(5000);
+        byte[] expected = new Blake3().digest(input);
+        MessageDigest md = new Blake3();
+        for (int step : new int[] {1, 63, 64, 65, 1000, 1024}) {
+            for (int i = 0; i < input.length; i += step) {
+                md.update(input, i, Math.min(step, input.length - i));
+            }
+            assertArrayEquals(expected, md.digest(), "step " + step);
+        }
+    }
+
+    @Test
+    public void minesAndVerifiesWithEachFunction() throws NoSuchAlgorithmException {
+        for (PowHash algorithm : PowHash.values()) {
+            assertEquals(algorithm, PowHash.forName(algorithm.getName()));
+            assertEquals(algorithm, PowHash.forCode(algorithm.getCode()));
+            BlockChain chain = new BlockChain(100, new ParallelMiner(2, ParallelMiner.Mode.LOWEST,
+                algorithm), Retargeter.fixed(6));
+            chain.append(chain.mine(-10));
+            chain.append(chain.mine(List.of(new Transaction(-5), new Transaction(3))));
+            assertEquals(algorithm, chain.get(2).getAlgorithm());
+            assertTrue(chain.verify());
+            BlockTree tree = new BlockTree(chain.get(0));
+            tree.add(chain.get(1));
+            tree.add(chain.get(2));
+            assertEquals(chain.getHash(), tree.getTip().getHash());
+        }
+    }
+
+    @Test
+    public void functionsGiveDifferentHashes() throws NoSuchAlgorithmException {
+        Block sha = new Block(0, 100, null, 7, 0, PowHash.SHA_256);
+        Block sha512 = new Block(0, 100, null, 7, 0, PowHash.SHA_512_256);
+        Block blake = new Block(0, 100, null, 7, 0, PowHash.BLAKE3);
+        assertEquals(new Block(0, 100, null, 7).getHash(), sha.getHash());
+        assertNotEquals(sha.getHash(), sha512.getHash());
+        assertNotEquals(sha.getHash(), blake.getHash());
+        assertNotEquals(sha512.getHash(), blake.getHash());
+    }
+
+    @Test
+    public void rejectsBlocksOfAnotherFunction() throws NoSuchAlgorithmException {
+        BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4), PowHash.BLAKE3);
+        Block wrong = Block.mine(1, -10, chain.getHash(), 4, PowHash.SHA_256);
+        assertThrows(IllegalArgumentException.class, () -> chain.append(wrong));
+        assertThrows(IllegalArgumentException.class, () -> new BlockTree(chain.get(0)).add(wrong));
+        assertThrows(IllegalArgumentException.class,
+            () -> new BlockChain(100, new ParallelMiner(1), Retargeter.fixed(4), PowHash.BLAKE3));
+        Block right = Block.mine(1, -10, chain.getHash(), 4, PowHash.BLAKE3);
+        assertEquals(1, new ChainVerifier(0).findInvalid(List.of(chain.get(0), wrong)));
+        assertEquals(-1, new ChainVerifier(0).findInvalid(List.of(chain.get(0), right)));
+    }
+
+    @Test
+    public void ledgersRecordTheirFunction() throws NoSuchAlgorithmException, IOException {
+        Path ledger = dir.resolve("ledger.bin");
+        Hash tip;
+        try (BlockStore store = BlockStore.open(ledger, 8, PowHash.SHA_512_256)) {
+            BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4), store);
+            chain.append(chain.mine(-10));
+            chain.append(chain.mine(-20));
+            tip = chain.getHash();
+        }
+        try (BlockStore store = BlockStore.open(ledger, 8, PowHash.BLAKE3)) {
+            assertEquals(PowHash.SHA_512_256, store.getAlgorithm());
+            BlockChain chain = new BlockChain(0, null, Retargeter.fixed(4), store);
+            assertEquals(PowHash.SHA_512_256, chain.getAlgorithm());
+            assertEquals(tip, chain.getHash());
+            assertTrue(chain.verify());
+        }
+        try (BlockStore store = BlockStore.open(dir.resolve("old.bin"), 8)) {
+            assertEquals(PowHash.SHA_256, store.getAlgorithm());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package edu.grinnell.csc207.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SignatureVerifierTests {
+    @TempDir
+    Path dir;
+
+    private static KeyPair keyPair() throws NoSuchAlgorithmException {
+        return KeyPairGenerator.getInstance(Transaction.SIGNATURE_ALGORITHM).generateKeyPair();
+    }
+
+    private static Transaction forge(Transaction tx, long sender, int amount) {
+        return new Transaction(sender, tx.receiver(), amount, tx.authorization());
+    }
+
+    @Test
+    public void checksSignatures() throws NoSuchAlgorithmException {
+        KeyPair keys = keyPair();
+        long account = Transaction.accountOf(keys.getPublic());
+        Transaction tx = Transaction.sign(keys, 42, 10);
+        assertEquals(account, tx.sender());
+        assertTrue(tx.isAuthorized());
+        assertFalse(forge(tx, account, 11).isAuthorized());
+        assertFalse(forge(tx, account + 1, 10).isAuthorized());
+        assertFalse(new Transaction(account, 42, 10).isAuthorized());
+        assertTrue(new Transaction(-10).isAuthorized());
+        assertTrue(new Transaction(Transaction.BOB, Transaction.ALICE, 3).isAuthorized());
+        // N.B., anyone may move money between Alice and Bob, but not out to others
+        assertFalse(new Transaction(Transaction.ALICE, account, 10).isAuthorized());
+        Transaction stolen = Transaction.sign(keyPair(), 42, 10);
+        assertFalse(new Transaction(account, 42, 10, stolen.authorization()).isAuthorized());
+    }
+
+    @Test
+    public void findsFirstUnauthorizedTransaction() throws NoSuchAlgorithmException {
+        KeyPair keys = keyPair();
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            txs.add(i % 3 == 0 ? new Transaction(i) : Transaction.sign(keys, i, i));
+        }
+        SignatureVerifier verifier = new SignatureVerifier(new ForkJoinPool(4));
+        assertEquals(-1, verifier.findUnauthorized(txs));
+        txs.set(250, forge(txs.get(250), txs.get(250).sender(), 1));
+        txs.set(170, forge(txs.get(170), txs.get(170).sender(), 1));
+        assertEquals(170, verifier.findUnauthorized(txs));
+    }
+
+    @Test
+    public void chainRejectsUnauthorizedBlocks() throws NoSuchAlgorithmException {
+        KeyPair keys = keyPair();
+        long account = Transaction.accountOf(keys.getPublic());
+        BlockChain chain = new BlockChain(List.of(new Transaction(Transaction.ALICE, account, 50)),
+            null, Retargeter.fixed(4));
+        assertEquals(50, chain.getBalance(account));
+        Block forged = chain.mine(List.of(new Transaction(account, Transaction.BOB, 50)));
+        assertThrows(IllegalArgumentException.class, () -> chain.append(forged));
+        Block drained = chain.mine(List.of(new Transaction(Transaction.BOB, account, 0)));
+        assertThrows(IllegalArgumentException.class, () -> chain.append(drained));
+        chain.append(chain.mine(List.of(Transaction.sign(keys, Transaction.BOB, 50))));
+        assertEquals(50, chain.getBalance(Transaction.BOB));
+        assertTrue(chain.verify());
+
+        List<Block> blocks = new ArrayList<>();
+        for (int i = 0; i < chain.getSize(); i++) {
+            blocks.add(chain.get(i));
+        }
+        Block victim = blocks.get(1);
+        Transaction tx = victim.getTransactions().get(0);
+        List<Transaction> txs = List.of(forge(tx, tx.sender(), 5));
+        blocks.set(1, Block.mine(1, txs, victim.getPrevHash(), 4));
+        assertEquals(1, new ChainVerifier(4).findInvalid(blocks));
+    }
+
+    @Test
+    public void mempoolRejectsUnauthorizedTransactions() throws NoSuchAlgorithmException {
+        KeyPair keys = keyPair();
+        long account = Transaction.accountOf(keys.getPublic());
+        BlockChain chain = new BlockChain(List.of(new Transaction(Transaction.ALICE, account, 50)),
+            null, Retargeter.fixed(4));
+        Mempool pool = new Mempool(chain);
+        assertThrows(IllegalArgumentException.class,
+            () -> pool.submit(new Transaction(account, Transaction.BOB, 10), 0));
+        assertTrue(pool.submit(Transaction.sign(keys, Transaction.BOB, 10), 0));
+    }
+
+    @Test
+    public void storesSignedTransactions() throws NoSuchAlgorithmException, IOException {
+        KeyPair keys = keyPair();
+        long account = Transaction.accountOf(keys.getPublic());
+        Path ledger = dir.resolve("ledger.bin");
+        List<Transaction> txs = List.of(Transaction.sign(keys, Transaction.BOB, 20),
+            Transaction.sign(keys, Transaction.ALICE, 5));
+        try (BlockStore store = BlockStore.open(ledger, 4)) {
+            BlockChain chain = new BlockChain(
+                List.of(new Transaction(Transaction.ALICE, account, 50)), null,
+                Retargeter.fixed(4), store);
+            chain.append(chain.mine(txs));
+        }
+        try (BlockStore store = BlockStore.open(ledger, 4)) {
+            assertEquals(txs, store.getBlocks().get(1).block().getTransactions());
+            BlockChain chain = new BlockChain(100, null, Retargeter.fixed(4), store);
+            assertEquals(25, chain.getBalance(account));
+            assertTrue(chain.verify());
+        }
+    }
+}
@@ -1,112 +1,538 @@
 package edu.grinnell.csc207.balancing;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
 public class AVLTree <T extends Comparable<? super T>> {
     private static class Node <T extends Comparable<? super T>> {
         public T data;
         public Node<T> left;
         public Node<T> right;
+        // N.B., the height of the subtree rooted here, cached so that
+        // rebalancing never has to walk the tree to recompute it
+        public int height;
+        // The number of keys in the subtree rooted here, for order statistics
+        public int count;
 
         private Node (T data, Node<T> left, Node<T> right) {
             this.data = data;
             this.left = left;
             this.right = right;
+            this.height = 1 + Math.max(heightOf(left), heightOf(right));
+            this.count = 1 + countOf(left) + countOf(right);
         }
 
         public Node (T data) { this(data, null, null); }
     }
 
     private Node<T> root;
+    // N.B., maintained by insert and delete so that size() need not walk the tree
+    private int size;
 
-    public AVLTree () { root = null; }
+    // N.B., null to order keys by their natural ordering
+    private final Comparator<? super T> comparator;
+    private long comparisons;
 
-    private int sizeH(Node<T> root) {
-        if (root == null) {
-            return 0;
+    public AVLTree () { this(null); }
+
+    /**
+     * Creates a tree ordering its keys with the given comparator, or by their
+     * natural ordering if it is null.
+     */
+    public AVLTree (Comparator<? super T> comparator) {
+        this.root = null;
+        this.size = 0;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Compares two keys, counting the comparison. Every operation compares
+     * the key it is given against each node on its way down exactly once.
+     */
+    private int compare (T a, T b) {
+        comparisons += 1;
+        return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+    }
+
+    /** Returns the number of key comparisons made since the last reset. */
+    public long getComparisons () { return comparisons; }
+
+    public void resetComparisons () { comparisons = 0; }
+
+    public int size() { return size; }
+
+    public boolean contains (T data) {
+        Node<T> cur = root;
+        while (cur != null) {
+            int c = compare(data, cur.data);
+            if (c < 0) {
+                cur = cur.left;
+            } else if (c > 0) {
+                cur = cur.right;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int heightOf (Node<?> root) {
+        return root == null ? 0 : root.height;
+    }
+
+    public int height() { return heightOf(root); }
+
+    private int balanceFactor (Node<T> root) {
+        return root == null ? 0 : heightOf(root.left) - heightOf(root.right);
+    }
+
+    private static int countOf (Node<?> root) {
+        return root == null ? 0 : root.count;
+    }
+
+    /** Recomputes the cached height and count of root from its children's. */
+    private static void update (Node<?> root) {
+        root.height = 1 + Math.max(heightOf(root.left), heightOf(root.right));
+        root.count = 1 + countOf(root.left) + countOf(root.right);
+    }
+
+    //
+    //        root              l
+    //        /  \             / \
+    //       l    c    ==>    a   root
+    //      / \                   /  \
+    //     a   b                 b    c
+    //
+    private Node<T> rotateRight (Node<T> root) {
+        Node<T> l = root.left;
+        root.left = l.right;
+        l.right = root;
+        update(root);
+        update(l);
+        return l;
+    }
+
+    //
+    //     root                  r
+    //     /  \                 / \
+    //    a    r      ==>    root  c
+    //        / \            /  \
+    //       b   c           a    b
+    //
+    private Node<T> rotateLeft (Node<T> root) {
+        Node<T> r = root.right;
+        root.right = r.left;
+        r.left = root;
+        update(root);
+        update(r);
+        return r;
+    }
+
+    /**
+     * Restores the AVL invariant at root, assuming that its children are
+     * balanced and differ in height by at most two, and refreshes its height.
+     * Returns the new root of the subtree.
+     */
+    private Node<T> rebalance (Node<T> root) {
+        update(root);
+        int bf = balanceFactor(root);
+        if (bf > 1) {
+            // N.B., a left-right case becomes a left-left case after one rotation
+            if (balanceFactor(root.left) < 0) {
+                root.left = rotateLeft(root.left);
+            }
+            return rotateRight(root);
+        } else if (bf < -1) {
+            if (balanceFactor(root.right) > 0) {
+                root.right = rotateRight(root.right);
+            }
+            return rotateLeft(root);
         } else {
-            return 1 + sizeH(root.left) + sizeH(root.right);
+            return root;
         }
     }
 
-    public int size() { return sizeH(root); }
+    // Insert and delete descend iteratively, recording the path from the
+    // root in an array, and then walk the path back up to rebalance. The
+    // path is at most height() + 1 nodes long.
 
-    private boolean containsH (T data, Node<T> root) {
-        if (root == null) {
-            return false;
-        } else if (data.compareTo(root.data) < 0) {
-            return containsH(data, root.left);
-        } else if (data.compareTo(root.data) > 0) {
-            return containsH(data, root.right);
+    @SuppressWarnings("unchecked")
+    private Node<T>[] newPath () {
+        return (Node<T>[]) new Node<?>[height() + 1];
+    }
+
+    /**
+     * Rebalances the first depth nodes of path, deepest first, relinking
+     * each one's replacement into its parent. Stops early once a node keeps
+     * its height without a rotation, since nothing above it can change.
+     */
+    private void rebalancePath (Node<T>[] path, int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<T> node = path[i];
+            int oldHeight = node.height;
+            Node<T> fixed = rebalance(node);
+            if (fixed == node && fixed.height == oldHeight) {
+                return;
+            }
+            if (i == 0) {
+                root = fixed;
+            } else if (path[i - 1].left == node) {
+                path[i - 1].left = fixed;
+            } else {
+                path[i - 1].right = fixed;
+            }
+        }
+    }
+
+    public void insert(T data) {
+        Node<T>[] path = newPath();
+        int depth = 0;
+        Node<T> cur = root;
+        boolean goLeft = false;
+        while (cur != null) {
+            path[depth++] = cur;
+            int c = compare(data, cur.data);
+            if (c < 0) {
+                goLeft = true;
+                cur = cur.left;
+            } else if (c > 0) {
+                goLeft = false;
+                cur = cur.right;
+            } else {
+                return;
+            }
+        }
+        Node<T> node = new Node<>(data);
+        if (depth == 0) {
+            root = node;
+        } else if (goLeft) {
+            path[depth - 1].left = node;
         } else {
-            return true;
+            path[depth - 1].right = node;
         }
+        size += 1;
+        for (int i = 0; i < depth; i++) {
+            path[i].count += 1;
+        }
+        rebalancePath(path, depth);
     }
 
-    public boolean contains (T data) { return containsH(data, root); }
+    public void delete(T data) {
+        Node<T>[] path = newPath();
+        int depth = 0;
+        Node<T> cur = root;
+        while (cur != null) {
+            int c = compare(data, cur.data);
+            if (c < 0) {
+                path[depth++] = cur;
+                cur = cur.left;
+            } else if (c > 0) {
+                path[depth++] = cur;
+                cur = cur.right;
+            } else {
+                break;
+            }
+        }
+        if (cur == null) {
+            return;
+        }
+        Node<T> parent = depth == 0 ? null : path[depth - 1];
+        Node<T> removed = cur;
+        Node<T> replacement;
+        if (cur.left == null) {
+            replacement = cur.right;
+        } else if (cur.right == null) {
+            replacement = cur.left;
+        } else {
+            // Replace the key with its predecessor, the maximum of the left
+            // subtree, and unlink the predecessor's node instead.
+            path[depth++] = cur;
+            removed = cur.left;
+            while (removed.right != null) {
+                path[depth++] = removed;
+                removed = removed.right;
+            }
+            cur.data = removed.data;
+            parent = path[depth - 1];
+            replacement = removed.left;
+        }
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == removed) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+        size -= 1;
+        // N.B., the path holds exactly the ancestors of the unlinked node
+        for (int i = 0; i < depth; i++) {
+            path[i].count -= 1;
+        }
+        rebalancePath(path, depth);
+    }
 
+    /**
+     * Returns the k-th smallest key of this tree, counting from 0.
+     *
+     * @throws IndexOutOfBoundsException if k is not in [0, size())
+     */
+    public T select (int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("no key of rank " + k + " among " + size);
+        }
+        Node<T> cur = root;
+        while (true) {
+            int leftCount = countOf(cur.left);
+            if (k < leftCount) {
+                cur = cur.left;
+            } else if (k > leftCount) {
+                k -= leftCount + 1;
+                cur = cur.right;
+            } else {
+                return cur.data;
+            }
+        }
+    }
 
-    public int height() {
-        // TODO: impelment me!
-        return 0;
+    /** Returns the number of keys of this tree that are less than data. */
+    public int rank (T data) {
+        int rank = 0;
+        Node<T> cur = root;
+        while (cur != null) {
+            int c = compare(data, cur.data);
+            if (c < 0) {
+                cur = cur.left;
+            } else if (c > 0) {
+                rank += countOf(cur.left) + 1;
+                cur = cur.right;
+            } else {
+                return rank + countOf(cur.left);
+            }
+        }
+        return rank;
     }
 
-    private int balanceFactor (Node<T> root) {
-        // TODO: implement me!
-        return 0;
+    /** Returns the number of keys of this tree in the range [lo, hi). */
+    public int countInRange (T lo, T hi) {
+        return Math.max(0, rank(hi) - rank(lo));
     }
 
-    private Node<T> insertH(T data, Node<T> root) {
-        if (root == null) {
-            return new Node<>(data);
-        } else if (data.compareTo(root.data) < 0) {
-            root.left = insertH(data, root.left);
-        } else if (data.compareTo(root.data) > 0) {
-            root.right = insertH(data, root.right);
+    // Bulk operations build a perfectly balanced tree directly from a sorted
+    // list of distinct keys, in linear time, rather than inserting one key
+    // at a time.
+
+    private Node<T> build (List<T> sorted, int lo, int hi) {
+        if (lo >= hi) {
+            return null;
         }
-        return root;
+        int mid = (lo + hi) >>> 1;
+        Node<T> left = build(sorted, lo, mid);
+        Node<T> right = build(sorted, mid + 1, hi);
+        return new Node<>(sorted.get(mid), left, right);
     }
 
-    public void insert(T data) {
-        root = insertH(data, root);
+    private void rebuild (List<T> sorted) {
+        root = build(sorted, 0, sorted.size());
+        size = sorted.size();
+    }
+
+    /** Adds key to the end of the sorted list out unless it equals the last key. */
+    private void appendDistinct (List<T> out, T key) {
+        if (out.isEmpty() || compare(out.get(out.size() - 1), key) != 0) {
+            out.add(key);
+        }
     }
 
-    private record FindAndDeleteResult<T extends Comparable <? super T>>(T data, Node<T> newRoot) {}
+    /** Returns the keys of this tree in order, walking it without recursion. */
+    private List<T> toList () {
+        List<T> keys = new ArrayList<>(size);
+        ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+        Node<T> cur = root;
+        while (cur != null || !stack.isEmpty()) {
+            while (cur != null) {
+                stack.push(cur);
+                cur = cur.left;
+            }
+            cur = stack.pop();
+            keys.add(cur.data);
+            cur = cur.right;
+        }
+        return keys;
+    }
 
-    private FindAndDeleteResult<T> findAndDeleteMax(Node<T> root) {
-        if (root == null) {
-            throw new IllegalStateException("findAndDeleteMin expects a non-empty tree");
-        } else if (root.right == null) {
-            return new FindAndDeleteResult<>(root.data, root.left);
-        } else {
-            FindAndDeleteResult<T> result = findAndDeleteMax(root.right);
-            root.right = result.newRoot;
-            return new FindAndDeleteResult<>(result.data, root);
+    public static <T extends Comparable<? super T>> AVLTree<T> fromSorted (Iterable<T> keys) {
+        return fromSorted(keys, null);
+    }
+
+    /**
+     * Builds a perfectly balanced tree of keys given in ascending order by
+     * comparator, or by their natural ordering if it is null, in linear time.
+     * Repeated keys are kept once.
+     *
+     * @throws IllegalArgumentException if the keys are out of order
+     */
+    public static <T extends Comparable<? super T>> AVLTree<T> fromSorted (Iterable<T> keys,
+            Comparator<? super T> comparator) {
+        AVLTree<T> tree = new AVLTree<T>(comparator);
+        List<T> sorted = new ArrayList<>();
+        for (T key : keys) {
+            if (!sorted.isEmpty() && tree.compare(sorted.get(sorted.size() - 1), key) > 0) {
+                throw new IllegalArgumentException("keys are not sorted: " + key + " follows "
+                    + sorted.get(sorted.size() - 1));
+            }
+            tree.appendDistinct(sorted, key);
         }
+        tree.rebuild(sorted);
+        return tree;
     }
 
-    private Node<T> deleteH(T data, Node<T> root) {
-        if (root == null) {
-            return null;
-        } else if (data.compareTo(root.data) < 0) {
-            root.left = deleteH(data, root.left);
-        } else if (data.compareTo(root.data) > 0) {
-            root.right = deleteH(data, root.right);
-        } else {
-            if (root.left == null) {
-                return root.right;
-            } else if (root.right == null) {
-                return root.left;
+    /**
+     * Adds a batch of keys by sorting it, merging it with the keys already
+     * in the tree and rebuilding the tree, in O(n + m log m) time for n keys
+     * in the tree and m in the batch.
+     */
+    public void addAll (Collection<? extends T> keys) {
+        // N.B., a batch much smaller than the tree is cheaper to insert key by
+        // key, at O(m log n), than to merge with all n keys
+        if ((long) keys.size() * (height() + 1) < size) {
+            for (T key : keys) {
+                insert(key);
+            }
+            return;
+        }
+        List<T> batch = new ArrayList<>(keys);
+        batch.sort(this::compare);
+        List<T> existing = toList();
+        List<T> merged = new ArrayList<>(existing.size() + batch.size());
+        int i = 0;
+        int j = 0;
+        while (i < existing.size() && j < batch.size()) {
+            if (compare(existing.get(i), batch.get(j)) <= 0) {
+                appendDistinct(merged, existing.get(i++));
             } else {
-                FindAndDeleteResult<T> result = findAndDeleteMax(root.left);
-                root.left = result.newRoot;
-                root.data = result.data;
-                return root;
+                appendDistinct(merged, batch.get(j++));
             }
         }
-        return root;
+        while (i < existing.size()) {
+            appendDistinct(merged, existing.get(i++));
+        }
+        while (j < batch.size()) {
+            appendDistinct(merged, batch.get(j++));
+        }
+        rebuild(merged);
+    }
+
+    /**
+     * Checks the subtree rooted at root: its keys lie strictly between lo and
+     * hi (either of which may be null for no bound), its cached heights and
+     * counts are correct, and every node's balance factor is -1, 0 or 1. Returns the
+     * height of the subtree.
+     */
+    private int validateH (Node<T> root, T lo, T hi) {
+        if (root == null) {
+            return 0;
+        }
+        if (lo != null && compare(root.data, lo) <= 0
+                || hi != null && compare(root.data, hi) >= 0) {
+            throw new IllegalStateException("key " + root.data + " is out of order");
+        }
+        int lh = validateH(root.left, lo, root.data);
+        int rh = validateH(root.right, root.data, hi);
+        if (root.height != 1 + Math.max(lh, rh)) {
+            throw new IllegalStateException("stale height at key " + root.data);
+        }
+        if (root.count != 1 + countOf(root.left) + countOf(root.right)) {
+            throw new IllegalStateException("stale count at key " + root.data);
+        }
+        if (Math.abs(lh - rh) > 1) {
+            throw new IllegalStateException("unbalanced at key " + root.data);
+        }
+        return root.height;
     }
 
-    private void delete(T data) {
-        root = deleteH(data, root);
+    /**
+     * Throws an IllegalStateException if this tree violates the BST ordering
+     * or the AVL balance invariant.
+     */
+    public void validate () { validateH(root, null, null); }
+
+    /**
+     * The most height an AVL tree of n keys may have: the height h of the
+     * sparsest AVL tree, a Fibonacci tree, grows as 1.44 lg(n + 2).
+     */
+    private static int maxHeight (int n) {
+        return (int) Math.floor(1.4405 * Math.log(n + 2) / Math.log(2) - 0.3277);
+    }
+
+    /**
+     * Runs a workload of inserts followed by deletes of the given keys
+     * against a TreeSet, validating the tree along the way.
+     */
+    private static void checkWorkload (String name, int[] inserts, int[] deletes) {
+        AVLTree<Integer> tree = new AVLTree<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < inserts.length; i++) {
+            tree.insert(inserts[i]);
+            expected.add(inserts[i]);
+            if (i % 97 == 0) {
+                tree.validate();
+            }
+        }
+        tree.validate();
+        int peak = tree.height();
+        for (int i = 0; i < deletes.length; i++) {
+            tree.delete(deletes[i]);
+            expected.remove(deletes[i]);
+            if (i % 97 == 0) {
+                tree.validate();
+            }
+        }
+        tree.validate();
+        for (int key : inserts) {
+            if (tree.contains(key) != expected.contains(key)) {
+                throw new IllegalStateException(name + ": wrong contents at key " + key);
+            }
+        }
+        if (tree.size() != expected.size()
+                || peak > maxHeight(inserts.length) || tree.height() > maxHeight(tree.size())) {
+            throw new IllegalStateException(name + ": wrong size or too tall");
+        }
+        System.out.printf("%-12s ok: %d keys, peak height %d (at most %d)%n",
+            name, inserts.length, peak, maxHeight(inserts.length));
+    }
+
+    private static int[] range (int n, boolean ascending) {
+        int[] keys = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ascending ? i : n - 1 - i;
+        }
+        return keys;
+    }
+
+    private static void checkBalance () {
+        int n = 10000;
+        Random rand = new Random(207);
+        int[] random = new int[n];
+        int[] randomDeletes = new int[n];
+        for (int i = 0; i < n; i++) {
+            random[i] = rand.nextInt(2 * n);
+            randomDeletes[i] = rand.nextInt(2 * n);
+        }
+        // N.B., keys converging on the middle force a double rotation at almost every step
+        int[] zigzag = new int[n];
+        for (int i = 0; i < n; i++) {
+            zigzag[i] = i % 2 == 0 ? i / 2 : n - 1 - i / 2;
+        }
+        checkWorkload("random", random, randomDeletes);
+        checkWorkload("ascending", range(n, true), range(n, true));
+        checkWorkload("descending", range(n, false), range(n / 2, true));
+        checkWorkload("zigzag", zigzag, range(n, false));
     }
 
     private static void printStatistics(AVLTree<Integer> tree) {
@@ -115,6 +541,130 @@ public class AVLTree <T extends Comparable<? super T>> {
         System.out.println("Balance factor: " + tree.balanceFactor(tree.root));
     }
 
+    /**
+     * Checks that a lookup compares its key against each node on its path
+     * exactly once: a hit costs at most height() comparisons, and a miss
+     * exactly as many as the depth at which it falls off the tree.
+     */
+    private static void checkComparisons () {
+        int n = 100000;
+        Random rand = new Random(207);
+        // N.B., long keys sharing a prefix make each comparison expensive
+        String prefix = "x".repeat(200);
+        AVLTree<String> tree = new AVLTree<>(Comparator.reverseOrder());
+        String[] keys = new String[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = prefix + rand.nextInt();
+            tree.insert(keys[i]);
+        }
+        tree.validate();
+        tree.resetComparisons();
+        for (String key : keys) {
+            if (!tree.contains(key)) {
+                throw new IllegalStateException("missing key " + key);
+            }
+        }
+        long hits = tree.getComparisons();
+        if (hits > (long) n * tree.height()) {
+            throw new IllegalStateException("more than one comparison per level");
+        }
+        System.out.printf("%d lookups of %d-character keys: %.2f comparisons each, height %d%n",
+            n, keys[0].length(), (double) hits / n, tree.height());
+    }
+
+    /**
+     * Checks select, rank and countInRange against a sorted array of the
+     * keys while the tree is mutated, then answers percentile queries.
+     */
+    private static void checkOrderStatistics () {
+        int n = 20000;
+        Random rand = new Random(207);
+        AVLTree<Integer> tree = new AVLTree<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < n; i++) {
+                int key = rand.nextInt(4 * n);
+                if (rand.nextInt(3) == 0) {
+                    tree.delete(key);
+                    expected.remove(key);
+                } else {
+                    tree.insert(key);
+                    expected.add(key);
+                }
+            }
+            tree.validate();
+            Integer[] sorted = expected.toArray(new Integer[0]);
+            for (int k = 0; k < sorted.length; k++) {
+                if (!tree.select(k).equals(sorted[k]) || tree.rank(sorted[k]) != k) {
+                    throw new IllegalStateException("wrong order statistic at rank " + k);
+                }
+            }
+            for (int i = 0; i < 1000; i++) {
+                int lo = rand.nextInt(4 * n);
+                int hi = lo + rand.nextInt(n);
+                if (tree.countInRange(lo, hi) != expected.subSet(lo, hi).size()
+                        || tree.rank(lo) != expected.headSet(lo).size()) {
+                    throw new IllegalStateException("wrong count in [" + lo + ", " + hi + ")");
+                }
+            }
+        }
+        int size = tree.size();
+        System.out.printf("%d keys: median %d, 90th percentile %d, 99th percentile %d%n", size,
+            tree.select(size / 2), tree.select(size * 9 / 10), tree.select(size * 99 / 100));
+    }
+
+    /**
+     * Times loading sorted keys in bulk against inserting them one at a
+     * time, then merges in a random batch and checks the result.
+     */
+    private static void checkBulkLoad () {
+        int n = 1000000;
+        List<Integer> evens = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            evens.add(2 * i);
+        }
+        long start = System.nanoTime();
+        AVLTree<Integer> inserted = new AVLTree<>();
+        for (int key : evens) {
+            inserted.insert(key);
+        }
+        long insertNanos = System.nanoTime() - start;
+        // N.B., let the first tree be collected so it does not slow down the second
+        inserted = null;
+        System.gc();
+        start = System.nanoTime();
+        AVLTree<Integer> tree = fromSorted(evens);
+        long loadNanos = System.nanoTime() - start;
+        tree.validate();
+        Random rand = new Random(207);
+        BitSet expected = new BitSet(4 * n);
+        List<Integer> batch = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            expected.set(2 * i);
+            int key = rand.nextInt(4 * n);
+            batch.add(key);
+            expected.set(key);
+        }
+        start = System.nanoTime();
+        tree.addAll(batch);
+        long mergeNanos = System.nanoTime() - start;
+        tree.validate();
+        List<Integer> keys = tree.toList();
+        int k = 0;
+        for (int key = expected.nextSetBit(0); key >= 0; key = expected.nextSetBit(key + 1)) {
+            if (keys.get(k++) != key) {
+                throw new IllegalStateException("wrong key at rank " + (k - 1));
+            }
+        }
+        if (k != tree.size()) {
+            throw new IllegalStateException("wrong size after merging");
+        }
+        System.out.printf("%d sorted keys: %d ms inserted one by one, %d ms bulk loaded%n",
+            n, insertNanos / 1000000, loadNanos / 1000000);
+        System.out.printf("Merged %d random keys in %d ms: %d keys, height %d%n",
+            n, mergeNanos / 1000000, tree.size(), tree.height());
+    }
+
     public static void main(String[] args) {
         AVLTree<Integer> tree = new AVLTree<>();
         tree.insert(5);
@@ -125,15 +675,15 @@ public class AVLTree <T extends Comparable<? super T>> {
         tree.insert(7);
         tree.insert(6);
         //
-        //        5
+        // The rotations keep the tree perfectly balanced:
+        //
+        //        3
         //       / \
         //      /   \
         //     /     \
-        //    1       7
-        //   / \     /
-        //  0   3   6
-        //     /
-        //    2
+        //    1       6
+        //   / \     / \
+        //  0   2   5   7
         //
         System.out.println("Initial insertions");
         System.out.println("==================");
@@ -149,5 +699,21 @@ public class AVLTree <T extends Comparable<? super T>> {
         System.out.println("Contains 4? " + tree.contains(4));
         System.out.println("Contains 5? " + tree.contains(5));
         System.out.println("Contains 6? " + tree.contains(6));
+        System.out.println();
+        System.out.println("Balance checks");
+        System.out.println("==============");
+        checkBalance();
+        System.out.println();
+        System.out.println("Comparison counts");
+        System.out.println("=================");
+        checkComparisons();
+        System.out.println();
+        System.out.println("Order statistics");
+        System.out.println("================");
+        checkOrderStatistics();
+        System.out.println();
+        System.out.println("Bulk loading");
+        System.out.println("============");
+        checkBulkLoad();
     }
 }
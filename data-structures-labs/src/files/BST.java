@@ -1,3 +1,9 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
 public class BST <T extends Comparable<? super T>> {
     private static class Node <T extends Comparable<? super T>> {
         public T data;
@@ -14,86 +20,234 @@ public class BST <T extends Comparable<? super T>> {
     }
 
     private Node<T> root;
+    // N.B., maintained by insert and delete so that size() need not walk the tree
+    private int size;
+
+    // N.B., null to order keys by their natural ordering
+    private final Comparator<? super T> comparator;
+    private long comparisons;
+
+    public BST () { this(null); }
+
+    /**
+     * Creates a tree ordering its keys with the given comparator, or by their
+     * natural ordering if it is null.
+     */
+    public BST (Comparator<? super T> comparator) {
+        this.root = null;
+        this.size = 0;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Compares two keys, counting the comparison. Every operation compares
+     * the key it is given against each node on its way down exactly once.
+     */
+    private int compare (T a, T b) {
+        comparisons += 1;
+        return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+    }
 
-    public BST () { root = null; }
+    /** Returns the number of key comparisons made since the last reset. */
+    public long getComparisons () { return comparisons; }
+
+    public void resetComparisons () { comparisons = 0; }
+
+    public int size () { return size; }
+
+    // The operations below descend iteratively rather than recursively: a BST
+    // built from sorted keys is a chain as deep as it is large, deep enough to
+    // overflow the call stack.
+
+    public boolean contains (T data) {
+        Node<T> cur = root;
+        while (cur != null) {
+            int c = compare(data, cur.data);
+            if (c < 0) {
+                cur = cur.left;
+            } else if (c > 0) {
+                cur = cur.right;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
 
-    private int sizeH (Node<T> root) {
-        if (root == null) {
-            return 0;
+    public void insert(T data) {
+        Node<T> parent = null;
+        Node<T> cur = root;
+        boolean goLeft = false;
+        while (cur != null) {
+            parent = cur;
+            int c = compare(data, cur.data);
+            if (c < 0) {
+                goLeft = true;
+                cur = cur.left;
+            } else if (c > 0) {
+                goLeft = false;
+                cur = cur.right;
+            } else {
+                return;
+            }
+        }
+        Node<T> node = new Node<>(data);
+        if (parent == null) {
+            root = node;
+        } else if (goLeft) {
+            parent.left = node;
         } else {
-            return 1 + sizeH(root.left) + sizeH(root.right);
+            parent.right = node;
         }
+        size += 1;
     }
 
-    public int size () { return sizeH(root); }
+    /**
+     * Replaces the child of parent that is old with replacement, or the root
+     * if parent is null.
+     */
+    private void replaceChild (Node<T> parent, Node<T> old, Node<T> replacement) {
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == old) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+    }
 
-    private boolean containsH (T data, Node<T> root) {
-        if (root == null) {
-            return false;
-        } else if (data.compareTo(root.data) < 0) {
-            return containsH(data, root.left);
-        } else if (data.compareTo(root.data) > 0) {
-            return containsH(data, root.right);
+    private void delete(T data) {
+        Node<T> parent = null;
+        Node<T> cur = root;
+        while (cur != null) {
+            int c = compare(data, cur.data);
+            if (c < 0) {
+                parent = cur;
+                cur = cur.left;
+            } else if (c > 0) {
+                parent = cur;
+                cur = cur.right;
+            } else {
+                break;
+            }
+        }
+        if (cur == null) {
+            return;
+        }
+        if (cur.left == null) {
+            replaceChild(parent, cur, cur.right);
+        } else if (cur.right == null) {
+            replaceChild(parent, cur, cur.left);
         } else {
-            return true;
+            // Replace the key with its predecessor, the maximum of the left
+            // subtree, and unlink the predecessor's node instead.
+            Node<T> maxParent = cur;
+            Node<T> max = cur.left;
+            while (max.right != null) {
+                maxParent = max;
+                max = max.right;
+            }
+            cur.data = max.data;
+            replaceChild(maxParent, max, max.left);
         }
+        size -= 1;
     }
 
-    public boolean contains (T data) { return containsH(data, root); }
+    // Bulk operations build a perfectly balanced tree directly from a sorted
+    // list of distinct keys, in linear time, rather than inserting one key
+    // at a time.
 
-    private Node<T> insertH(T data, Node<T> root) {
-        if (root == null) {
-            return new Node<>(data);
-        } else if (data.compareTo(root.data) < 0) {
-            root.left = insertH(data, root.left);
-        } else if (data.compareTo(root.data) > 0) {
-            root.right = insertH(data, root.right);
+    private Node<T> build (List<T> sorted, int lo, int hi) {
+        if (lo >= hi) {
+            return null;
         }
-        return root;
+        int mid = (lo + hi) >>> 1;
+        Node<T> left = build(sorted, lo, mid);
+        Node<T> right = build(sorted, mid + 1, hi);
+        return new Node<>(sorted.get(mid), left, right);
     }
 
-    public void insert(T data) {
-        root = insertH(data, root);
+    private void rebuild (List<T> sorted) {
+        root = build(sorted, 0, sorted.size());
+        size = sorted.size();
     }
 
-    private record FindAndDeleteResult<T extends Comparable <? super T>>(T data, Node<T> newRoot) {}
+    /** Adds key to the end of the sorted list out unless it equals the last key. */
+    private void appendDistinct (List<T> out, T key) {
+        if (out.isEmpty() || compare(out.get(out.size() - 1), key) != 0) {
+            out.add(key);
+        }
+    }
 
-    private FindAndDeleteResult<T> findAndDeleteMax(Node<T> root) {
-        if (root == null) {
-            throw new IllegalStateException("findAndDeleteMin expects a non-empty tree");
-        } else if (root.right == null) {
-            return new FindAndDeleteResult<>(root.data, root.left);
-        } else {
-            FindAndDeleteResult<T> result = findAndDeleteMax(root.right);
-            root.right = result.newRoot;
-            return new FindAndDeleteResult<>(result.data, root);
+    /** Returns the keys of this tree in order, walking it without recursion. */
+    private List<T> toList () {
+        List<T> keys = new ArrayList<>(size);
+        ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+        Node<T> cur = root;
+        while (cur != null || !stack.isEmpty()) {
+            while (cur != null) {
+                stack.push(cur);
+                cur = cur.left;
+            }
+            cur = stack.pop();
+            keys.add(cur.data);
+            cur = cur.right;
         }
+        return keys;
     }
 
-    private Node<T> deleteH(T data, Node<T> root) {
-        if (root == null) {
-            return null;
-        } else if (data.compareTo(root.data) < 0) {
-            root.left = deleteH(data, root.left);
-        } else if (data.compareTo(root.data) > 0) {
-            root.right = deleteH(data, root.right);
-        } else {
-            if (root.left == null) {
-                return root.right;
-            } else if (root.right == null) {
-                return root.left;
-            } else {
-                FindAndDeleteResult<T> result = findAndDeleteMax(root.left);
-                root.left = result.newRoot;
-                root.data = result.data;
-                return root;
+    public static <T extends Comparable<? super T>> BST<T> fromSorted (Iterable<T> keys) {
+        return fromSorted(keys, null);
+    }
+
+    /**
+     * Builds a perfectly balanced tree of keys given in ascending order by
+     * comparator, or by their natural ordering if it is null, in linear time.
+     * Repeated keys are kept once.
+     *
+     * @throws IllegalArgumentException if the keys are out of order
+     */
+    public static <T extends Comparable<? super T>> BST<T> fromSorted (Iterable<T> keys,
+            Comparator<? super T> comparator) {
+        BST<T> tree = new BST<T>(comparator);
+        List<T> sorted = new ArrayList<>();
+        for (T key : keys) {
+            if (!sorted.isEmpty() && tree.compare(sorted.get(sorted.size() - 1), key) > 0) {
+                throw new IllegalArgumentException("keys are not sorted: " + key + " follows "
+                    + sorted.get(sorted.size() - 1));
             }
+            tree.appendDistinct(sorted, key);
         }
-        return root;
+        tree.rebuild(sorted);
+        return tree;
     }
 
-    private void delete(T data) {
-        root = deleteH(data, root);
+    /**
+     * Adds a batch of keys by sorting it, merging it with the keys already
+     * in the tree and rebuilding the tree, in O(n + m log m) time for n keys
+     * in the tree and m in the batch.
+     */
+    public void addAll (Collection<? extends T> keys) {
+        List<T> batch = new ArrayList<>(keys);
+        batch.sort(this::compare);
+        List<T> existing = toList();
+        List<T> merged = new ArrayList<>(existing.size() + batch.size());
+        int i = 0;
+        int j = 0;
+        while (i < existing.size() && j < batch.size()) {
+            if (compare(existing.get(i), batch.get(j)) <= 0) {
+                appendDistinct(merged, existing.get(i++));
+            } else {
+                appendDistinct(merged, batch.get(j++));
+            }
+        }
+        while (i < existing.size()) {
+            appendDistinct(merged, existing.get(i++));
+        }
+        while (j < batch.size()) {
+            appendDistinct(merged, batch.get(j++));
+        }
+        rebuild(merged);
     }
 
     public static void main(String[] args) {
@@ -130,5 +284,48 @@ public class BST <T extends Comparable<? super T>> {
         System.out.println("Contains 4? " + tree.contains(4));
         System.out.println("Contains 5? " + tree.contains(5));
         System.out.println("Contains 6? " + tree.contains(6));
+        System.out.println();
+        // Each lookup compares against each node on its path once: 3, 7 and 6 for 6.
+        tree.resetComparisons();
+        tree.contains(6);
+        System.out.println("Comparisons to find 6: " + tree.getComparisons());
+        BST<Integer> reversed = new BST<>(Comparator.reverseOrder());
+        for (int i = 0; i < 7; i++) {
+            reversed.insert(i);
+        }
+        reversed.resetComparisons();
+        // N.B., in reverse order ascending keys make a chain to the left
+        System.out.println("Contains 6 in reverse order? " + reversed.contains(6));
+        System.out.println("Comparisons to find it: " + reversed.getComparisons());
+        System.out.println();
+        // Sorted keys make a chain; this used to overflow the stack.
+        BST<Integer> chain = new BST<>();
+        int n = 20000;
+        for (int i = 0; i < n; i++) {
+            chain.insert(i);
+        }
+        System.out.println("Degenerate tree");
+        System.out.println("===============");
+        System.out.println("Size: " + chain.size());
+        System.out.println("Contains " + (n - 1) + "? " + chain.contains(n - 1));
+        for (int i = n - 1; i >= 0; i -= 2) {
+            chain.delete(i);
+        }
+        System.out.println("Size after deleting every other key: " + chain.size());
+        System.out.println("Contains 0? " + chain.contains(0));
+        System.out.println();
+        // The same keys loaded in bulk make a balanced tree instead.
+        List<Integer> sorted = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            sorted.add(i);
+        }
+        BST<Integer> balanced = BST.fromSorted(sorted);
+        balanced.addAll(List.of(-3, n + 5, 7, -3));
+        System.out.println("Bulk loaded tree");
+        System.out.println("================");
+        System.out.println("Size: " + balanced.size());
+        balanced.resetComparisons();
+        System.out.println("Contains " + (n - 1) + "? " + balanced.contains(n - 1));
+        System.out.println("Comparisons to find it: " + balanced.getComparisons());
     }
 }
@@ -0,0 +1,456 @@
+package edu.grinnell.csc207.balancing;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An in-memory B-tree. Each node holds a sorted array of up to
+ * 2t - 1 keys, where t is the tree's minimum degree, and an internal node
+ * with k keys has k + 1 children. Every node but the root holds at least
+ * t - 1 keys and every leaf is at the same depth, so a tree of n keys has
+ * about log_t(n) levels.
+ *
+ * <p>A lookup binary-searches the keys of one node per level. With t = 16
+ * a node holds up to 31 keys in one contiguous array, so each level costs
+ * a handful of nearby loads instead of the dependent pointer chase of every
+ * level of a binary tree, and there are a quarter as many levels.
+ *
+ * <p>Insert and delete are the single-pass, top-down algorithms of CLRS:
+ * insert splits every full node on its way down, and delete tops up every
+ * node it descends into to at least t keys, so neither ever backs up.
+ */
+public class BTree <T extends Comparable<? super T>> {
+    public static final int DEFAULT_MIN_DEGREE = 16;
+
+    private static class Node {
+        public Object[] keys;
+        // N.B., null for a leaf
+        public Node[] children;
+        public int n;
+
+        private Node (int minDegree, boolean leaf) {
+            this.keys = new Object[2 * minDegree - 1];
+            this.children = leaf ? null : new Node[2 * minDegree];
+            this.n = 0;
+        }
+
+        public boolean isLeaf () { return children == null; }
+    }
+
+    private final int t;
+    private final Comparator<? super T> comparator;
+    private Node root;
+    private int size;
+
+    public BTree () { this(DEFAULT_MIN_DEGREE, null); }
+
+    /**
+     * Creates a tree whose nodes hold between minDegree - 1 and
+     * 2 minDegree - 1 keys, ordering its keys with the given comparator, or
+     * by their natural ordering if it is null.
+     */
+    public BTree (int minDegree, Comparator<? super T> comparator) {
+        if (minDegree < 2) {
+            throw new IllegalArgumentException("minimum degree must be at least 2: " + minDegree);
+        }
+        this.t = minDegree;
+        this.comparator = comparator;
+        this.root = new Node(t, true);
+        this.size = 0;
+    }
+
+    public int size () { return size; }
+
+    /** Returns the number of levels of this tree, 0 if it is empty. */
+    public int height () {
+        if (size == 0) {
+            return 0;
+        }
+        int h = 1;
+        for (Node x = root; !x.isLeaf(); x = x.children[0]) {
+            h += 1;
+        }
+        return h;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare (Object a, Object b) {
+        return comparator == null
+            ? ((T) a).compareTo((T) b)
+            : comparator.compare((T) a, (T) b);
+    }
+
+    /**
+     * Binary-searches the keys of x, returning the index of data if it is
+     * there and -(i + 1) otherwise, where i is the index of the child whose
+     * subtree would hold it.
+     */
+    private int search (Node x, Object data) {
+        int lo = 0;
+        int hi = x.n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(x.keys[mid], data);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    public boolean contains (T data) {
+        Node x = root;
+        while (true) {
+            int i = search(x, data);
+            if (i >= 0) {
+                return true;
+            } else if (x.isLeaf()) {
+                return false;
+            }
+            x = x.children[-(i + 1)];
+        }
+    }
+
+    //
+    //   parent: [ ... a b ... ]            parent: [ ... a m b ... ]
+    //                  |                ==>               / \
+    //   full:   [ x1 .. m .. x2t-1 ]          [ x1 .. ]   [ .. x2t-1 ]
+    //
+    /** Splits the full i-th child of parent around its middle key. */
+    private void splitChild (Node parent, int i) {
+        Node full = parent.children[i];
+        Node right = new Node(t, full.isLeaf());
+        right.n = t - 1;
+        System.arraycopy(full.keys, t, right.keys, 0, t - 1);
+        if (!full.isLeaf()) {
+            System.arraycopy(full.children, t, right.children, 0, t);
+            Arrays.fill(full.children, t, 2 * t, null);
+        }
+        Object middle = full.keys[t - 1];
+        Arrays.fill(full.keys, t - 1, 2 * t - 1, null);
+        full.n = t - 1;
+        System.arraycopy(parent.children, i + 1, parent.children, i + 2, parent.n - i);
+        parent.children[i + 1] = right;
+        System.arraycopy(parent.keys, i, parent.keys, i + 1, parent.n - i);
+        parent.keys[i] = middle;
+        parent.n += 1;
+    }
+
+    public void insert (T data) {
+        if (root.n == 2 * t - 1) {
+            Node old = root;
+            root = new Node(t, false);
+            root.children[0] = old;
+            splitChild(root, 0);
+        }
+        Node x = root;
+        while (true) {
+            int i = search(x, data);
+            if (i >= 0) {
+                return;
+            }
+            i = -(i + 1);
+            if (x.isLeaf()) {
+                System.arraycopy(x.keys, i, x.keys, i + 1, x.n - i);
+                x.keys[i] = data;
+                x.n += 1;
+                size += 1;
+                return;
+            }
+            if (x.children[i].n == 2 * t - 1) {
+                splitChild(x, i);
+                int c = compare(data, x.keys[i]);
+                if (c == 0) {
+                    return;
+                } else if (c > 0) {
+                    i += 1;
+                }
+            }
+            x = x.children[i];
+        }
+    }
+
+    /**
+     * Merges the (i + 1)-th child of parent and the key between them into
+     * the i-th child, both of which hold t - 1 keys.
+     */
+    private void merge (Node parent, int i) {
+        Node l = parent.children[i];
+        Node r = parent.children[i + 1];
+        l.keys[l.n] = parent.keys[i];
+        System.arraycopy(r.keys, 0, l.keys, l.n + 1, r.n);
+        if (!l.isLeaf()) {
+            System.arraycopy(r.children, 0, l.children, l.n + 1, r.n + 1);
+        }
+        l.n += r.n + 1;
+        System.arraycopy(parent.keys, i + 1, parent.keys, i, parent.n - i - 1);
+        System.arraycopy(parent.children, i + 2, parent.children, i + 1, parent.n - i - 1);
+        parent.n -= 1;
+        parent.keys[parent.n] = null;
+        parent.children[parent.n + 1] = null;
+        if (parent == root && parent.n == 0) {
+            root = l;
+        }
+    }
+
+    /** Moves the last key of the (i - 1)-th child up and a key down into the i-th child. */
+    private void borrowFromLeft (Node parent, int i) {
+        Node c = parent.children[i];
+        Node s = parent.children[i - 1];
+        System.arraycopy(c.keys, 0, c.keys, 1, c.n);
+        c.keys[0] = parent.keys[i - 1];
+        if (!c.isLeaf()) {
+            System.arraycopy(c.children, 0, c.children, 1, c.n + 1);
+            c.children[0] = s.children[s.n];
+            s.children[s.n] = null;
+        }
+        c.n += 1;
+        parent.keys[i - 1] = s.keys[s.n - 1];
+        s.keys[s.n - 1] = null;
+        s.n -= 1;
+    }
+
+    /** Moves the first key of the (i + 1)-th child up and a key down into the i-th child. */
+    private void borrowFromRight (Node parent, int i) {
+        Node c = parent.children[i];
+        Node s = parent.children[i + 1];
+        c.keys[c.n] = parent.keys[i];
+        if (!c.isLeaf()) {
+            c.children[c.n + 1] = s.children[0];
+            System.arraycopy(s.children, 1, s.children, 0, s.n);
+            s.children[s.n] = null;
+        }
+        c.n += 1;
+        parent.keys[i] = s.keys[0];
+        System.arraycopy(s.keys, 1, s.keys, 0, s.n - 1);
+        s.n -= 1;
+        s.keys[s.n] = null;
+    }
+
+    public void delete (T data) {
+        Object key = data;
+        Node x = root;
+        while (true) {
+            int i = search(x, key);
+            if (i >= 0 && x.isLeaf()) {
+                System.arraycopy(x.keys, i + 1, x.keys, i, x.n - i - 1);
+                x.n -= 1;
+                x.keys[x.n] = null;
+                size -= 1;
+                return;
+            } else if (i >= 0) {
+                // Replace the key with its predecessor or successor from a
+                // child that can spare one and go on to delete that instead,
+                // or merge the children around it and delete it from there.
+                Node l = x.children[i];
+                Node r = x.children[i + 1];
+                if (l.n >= t) {
+                    Node y = l;
+                    while (!y.isLeaf()) {
+                        y = y.children[y.n];
+                    }
+                    key = y.keys[y.n - 1];
+                    x.keys[i] = key;
+                    x = l;
+                } else if (r.n >= t) {
+                    Node y = r;
+                    while (!y.isLeaf()) {
+                        y = y.children[0];
+                    }
+                    key = y.keys[0];
+                    x.keys[i] = key;
+                    x = r;
+                } else {
+                    merge(x, i);
+                    x = l;
+                }
+            } else if (x.isLeaf()) {
+                return;
+            } else {
+                i = -(i + 1);
+                if (x.children[i].n == t - 1) {
+                    if (i > 0 && x.children[i - 1].n >= t) {
+                        borrowFromLeft(x, i);
+                    } else if (i < x.n && x.children[i + 1].n >= t) {
+                        borrowFromRight(x, i);
+                    } else if (i < x.n) {
+                        merge(x, i);
+                    } else {
+                        merge(x, i - 1);
+                        i -= 1;
+                    }
+                }
+                x = x.children[i];
+            }
+        }
+    }
+
+    /**
+     * Checks the subtree rooted at x, whose keys must lie strictly between
+     * lo and hi (either of which may be null for no bound). Returns its
+     * number of levels.
+     */
+    private int validateH (Node x, Object lo, Object hi) {
+        if (x != root && (x.n < t - 1 || x.n > 2 * t - 1)) {
+            throw new IllegalStateException("node with " + x.n + " keys");
+        }
+        for (int i = 0; i < x.n; i++) {
+            if (i == 0 && lo != null && compare(x.keys[0], lo) <= 0
+                    || i > 0 && compare(x.keys[i - 1], x.keys[i]) >= 0
+                    || hi != null && compare(x.keys[i], hi) >= 0) {
+                throw new IllegalStateException("key " + x.keys[i] + " is out of order");
+            }
+        }
+        if (x.isLeaf()) {
+            return 1;
+        }
+        int h = validateH(x.children[0], lo, x.n > 0 ? x.keys[0] : hi);
+        for (int i = 1; i <= x.n; i++) {
+            Object upper = i < x.n ? x.keys[i] : hi;
+            if (validateH(x.children[i], x.keys[i - 1], upper) != h) {
+                throw new IllegalStateException("leaves at different depths");
+            }
+        }
+        return h + 1;
+    }
+
+    /**
+     * Throws an IllegalStateException if this tree violates the ordering,
+     * occupancy or uniform depth of a B-tree.
+     */
+    public void validate () { validateH(root, null, null); }
+
+    /** Runs random inserts and deletes against a TreeSet for a few degrees. */
+    private static void checkAgainstTreeSet () {
+        for (int degree : new int[] {2, 3, 16}) {
+            Random rand = new Random(207);
+            BTree<Integer> tree = new BTree<>(degree, null);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < 200000; i++) {
+                int key = rand.nextInt(20000);
+                if (rand.nextInt(5) < 2) {
+                    tree.delete(key);
+                    expected.remove(key);
+                } else {
+                    tree.insert(key);
+                    expected.add(key);
+                }
+                if (i % 997 == 0) {
+                    tree.validate();
+                }
+            }
+            for (int key = 0; key < 20000; key++) {
+                if (tree.contains(key) != expected.contains(key)) {
+                    throw new IllegalStateException("wrong contents at key " + key);
+                }
+            }
+            for (int key = 0; key < 20000; key++) {
+                tree.delete(key);
+            }
+            tree.validate();
+            if (tree.size() != 0 || tree.height() != 0) {
+                throw new IllegalStateException("tree not empty after deleting every key");
+            }
+            System.out.printf("Degree %2d matches TreeSet%n", degree);
+        }
+    }
+
+    /** The operations being timed, over the same keys for each structure. */
+    private interface IntSet {
+        void insert (int key);
+        boolean contains (int key);
+        void delete (int key);
+        int size ();
+    }
+
+    private static void time (String name, IntSet set, int[] keys) {
+        long start = System.nanoTime();
+        for (int key : keys) {
+            set.insert(key);
+        }
+        long inserted = System.nanoTime();
+        int hits = 0;
+        for (int key : keys) {
+            if (set.contains(key)) {
+                hits += 1;
+            }
+        }
+        long looked = System.nanoTime();
+        for (int i = 0; i < keys.length; i += 2) {
+            set.delete(keys[i]);
+        }
+        long deleted = System.nanoTime();
+        if (hits != keys.length) {
+            throw new IllegalStateException(name + " lost keys");
+        }
+        System.out.printf("%-18s %10.0f %10.0f %10.0f %10d%n", name,
+            (inserted - start) / (double) keys.length,
+            (looked - inserted) / (double) keys.length,
+            (deleted - looked) / (keys.length / 2.0), set.size());
+    }
+
+    /**
+     * Times n random inserts, n lookups and n / 2 deletes against each of
+     * AVLTree, TreeMap and BTree, one structure at a time so that each has
+     * the heap to itself.
+     */
+    private static void benchmark (int n, int degree) {
+        int[] keys = new Random(207).ints(n).distinct().toArray();
+        System.out.printf("%d random keys, B-tree minimum degree %d%n", keys.length, degree);
+        System.out.printf("%-18s %10s %10s %10s %10s%n", "ns per operation", "insert",
+            "contains", "delete", "size");
+        // N.B., each structure is built inside time() and dropped when it returns
+        time("AVLTree", avlSet(), keys);
+        time("TreeMap", treeMapSet(), keys);
+        time("BTree", bTreeSet(degree), keys);
+    }
+
+    private static IntSet avlSet () {
+        AVLTree<Integer> avl = new AVLTree<>();
+        return new IntSet() {
+            public void insert (int key) { avl.insert(key); }
+            public boolean contains (int key) { return avl.contains(key); }
+            public void delete (int key) { avl.delete(key); }
+            public int size () { return avl.size(); }
+        };
+    }
+
+    private static IntSet treeMapSet () {
+        TreeMap<Integer, Boolean> map = new TreeMap<>();
+        return new IntSet() {
+            public void insert (int key) { map.put(key, Boolean.TRUE); }
+            public boolean contains (int key) { return map.containsKey(key); }
+            public void delete (int key) { map.remove(key); }
+            public int size () { return map.size(); }
+        };
+    }
+
+    private static IntSet bTreeSet (int degree) {
+        BTree<Integer> btree = new BTree<>(degree, null);
+        return new IntSet() {
+            public void insert (int key) { btree.insert(key); }
+            public boolean contains (int key) { return btree.contains(key); }
+            public void delete (int key) { btree.delete(key); }
+            public int size () { return btree.size(); }
+        };
+    }
+
+    /**
+     * Usage: BTree [keys] [minimum degree]. Checking against TreeSet comes
+     * first; the default benchmark of 10^7 keys needs a heap of about 2 GB.
+     */
+    public static void main (String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        int degree = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MIN_DEGREE;
+        checkAgainstTreeSet();
+        System.out.println();
+        benchmark(n, degree);
+    }
+}
@@ -0,0 +1,490 @@
+package edu.grinnell.csc207.balancing;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * An AVL tree of int keys that stores its nodes in parallel arrays rather
+ * than as objects. Node i has key keys[i], children left[i] and right[i],
+ * and caches the height and key count of its subtree. Index 0 is a
+ * sentinel standing for the empty tree, with height and count 0, so the
+ * code never checks for null.
+ *
+ * <p>A node takes 4 + 4 + 4 + 4 + 1 = 17 bytes, against about 48 for an
+ * AVLTree&lt;Integer&gt; node and its boxed key, and the collector sees a
+ * handful of arrays instead of one object per key. Deleted slots are kept
+ * on a free list, threaded through left[], and reused by later inserts.
+ */
+public class IntAVLTree {
+    private static final int NIL = 0;
+
+    private int[] keys;
+    private int[] left;
+    private int[] right;
+    private byte[] heights;
+    private int[] counts;
+    private int root;
+    // The next never-used slot, and the head of the list of freed slots
+    private int next;
+    private int free;
+
+    public IntAVLTree () { this(16); }
+
+    /** Creates a tree with room for capacity keys before it must grow. */
+    public IntAVLTree (int capacity) {
+        int slots = Math.max(capacity, 1) + 1;
+        keys = new int[slots];
+        left = new int[slots];
+        right = new int[slots];
+        heights = new byte[slots];
+        counts = new int[slots];
+        root = NIL;
+        next = 1;
+        free = NIL;
+    }
+
+    public int size () { return counts[root]; }
+
+    public int height () { return heights[root]; }
+
+    public boolean contains (int key) {
+        int cur = root;
+        while (cur != NIL) {
+            if (key < keys[cur]) {
+                cur = left[cur];
+            } else if (key > keys[cur]) {
+                cur = right[cur];
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void grow () {
+        int slots = keys.length + (keys.length >> 1) + 1;
+        keys = Arrays.copyOf(keys, slots);
+        left = Arrays.copyOf(left, slots);
+        right = Arrays.copyOf(right, slots);
+        heights = Arrays.copyOf(heights, slots);
+        counts = Arrays.copyOf(counts, slots);
+    }
+
+    private int allocate (int key) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = left[free];
+        } else {
+            if (next == keys.length) {
+                grow();
+            }
+            node = next++;
+        }
+        keys[node] = key;
+        left[node] = NIL;
+        right[node] = NIL;
+        heights[node] = 1;
+        counts[node] = 1;
+        return node;
+    }
+
+    private void release (int node) {
+        left[node] = free;
+        free = node;
+    }
+
+    private void update (int node) {
+        heights[node] = (byte) (1 + Math.max(heights[left[node]], heights[right[node]]));
+        counts[node] = 1 + counts[left[node]] + counts[right[node]];
+    }
+
+    private int balanceFactor (int node) {
+        return heights[left[node]] - heights[right[node]];
+    }
+
+    private int rotateRight (int node) {
+        int l = left[node];
+        left[node] = right[l];
+        right[l] = node;
+        update(node);
+        update(l);
+        return l;
+    }
+
+    private int rotateLeft (int node) {
+        int r = right[node];
+        right[node] = left[r];
+        left[r] = node;
+        update(node);
+        update(r);
+        return r;
+    }
+
+    private int rebalance (int node) {
+        update(node);
+        int bf = balanceFactor(node);
+        if (bf > 1) {
+            if (balanceFactor(left[node]) < 0) {
+                left[node] = rotateLeft(left[node]);
+            }
+            return rotateRight(node);
+        } else if (bf < -1) {
+            if (balanceFactor(right[node]) > 0) {
+                right[node] = rotateRight(right[node]);
+            }
+            return rotateLeft(node);
+        } else {
+            return node;
+        }
+    }
+
+    /**
+     * Rebalances the first depth nodes of path, deepest first, after their
+     * counts have been adjusted, stopping once a node keeps its height
+     * without a rotation.
+     */
+    private void rebalancePath (int[] path, int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            int node = path[i];
+            int oldHeight = heights[node];
+            int fixed = rebalance(node);
+            if (fixed == node && heights[fixed] == oldHeight) {
+                return;
+            }
+            if (i == 0) {
+                root = fixed;
+            } else if (left[path[i - 1]] == node) {
+                left[path[i - 1]] = fixed;
+            } else {
+                right[path[i - 1]] = fixed;
+            }
+        }
+    }
+
+    public void insert (int key) {
+        int[] path = new int[height() + 1];
+        int depth = 0;
+        int cur = root;
+        boolean goLeft = false;
+        while (cur != NIL) {
+            path[depth++] = cur;
+            if (key < keys[cur]) {
+                goLeft = true;
+                cur = left[cur];
+            } else if (key > keys[cur]) {
+                goLeft = false;
+                cur = right[cur];
+            } else {
+                return;
+            }
+        }
+        int node = allocate(key);
+        if (depth == 0) {
+            root = node;
+        } else if (goLeft) {
+            left[path[depth - 1]] = node;
+        } else {
+            right[path[depth - 1]] = node;
+        }
+        for (int i = 0; i < depth; i++) {
+            counts[path[i]] += 1;
+        }
+        rebalancePath(path, depth);
+    }
+
+    public void delete (int key) {
+        int[] path = new int[height() + 1];
+        int depth = 0;
+        int cur = root;
+        while (cur != NIL && key != keys[cur]) {
+            path[depth++] = cur;
+            cur = key < keys[cur] ? left[cur] : right[cur];
+        }
+        if (cur == NIL) {
+            return;
+        }
+        int removed = cur;
+        int replacement;
+        if (left[cur] == NIL) {
+            replacement = right[cur];
+        } else if (right[cur] == NIL) {
+            replacement = left[cur];
+        } else {
+            // Move the predecessor's key up and unlink its node instead.
+            path[depth++] = cur;
+            removed = left[cur];
+            while (right[removed] != NIL) {
+                path[depth++] = removed;
+                removed = right[removed];
+            }
+            keys[cur] = keys[removed];
+            replacement = left[removed];
+        }
+        if (depth == 0) {
+            root = replacement;
+        } else if (left[path[depth - 1]] == removed) {
+            left[path[depth - 1]] = replacement;
+        } else {
+            right[path[depth - 1]] = replacement;
+        }
+        release(removed);
+        for (int i = 0; i < depth; i++) {
+            counts[path[i]] -= 1;
+        }
+        rebalancePath(path, depth);
+    }
+
+    /**
+     * Returns the k-th smallest key of this tree, counting from 0.
+     *
+     * @throws IndexOutOfBoundsException if k is not in [0, size())
+     */
+    public int select (int k) {
+        if (k < 0 || k >= size()) {
+            throw new IndexOutOfBoundsException("no key of rank " + k + " among " + size());
+        }
+        int cur = root;
+        while (true) {
+            int leftCount = counts[left[cur]];
+            if (k < leftCount) {
+                cur = left[cur];
+            } else if (k > leftCount) {
+                k -= leftCount + 1;
+                cur = right[cur];
+            } else {
+                return keys[cur];
+            }
+        }
+    }
+
+    /** Returns the number of keys of this tree that are less than key. */
+    public int rank (int key) {
+        int rank = 0;
+        int cur = root;
+        while (cur != NIL) {
+            if (key < keys[cur]) {
+                cur = left[cur];
+            } else if (key > keys[cur]) {
+                rank += counts[left[cur]] + 1;
+                cur = right[cur];
+            } else {
+                return rank + counts[left[cur]];
+            }
+        }
+        return rank;
+    }
+
+    /** Returns the number of keys of this tree in the range [lo, hi). */
+    public int countInRange (int lo, int hi) {
+        return Math.max(0, rank(hi) - rank(lo));
+    }
+
+    private int build (int[] sorted, int lo, int hi) {
+        if (lo >= hi) {
+            return NIL;
+        }
+        int mid = (lo + hi) >>> 1;
+        int l = build(sorted, lo, mid);
+        int r = build(sorted, mid + 1, hi);
+        int node = allocate(sorted[mid]);
+        left[node] = l;
+        right[node] = r;
+        update(node);
+        return node;
+    }
+
+    /**
+     * Builds a perfectly balanced tree of keys given in ascending order, in
+     * linear time. Repeated keys are kept once.
+     *
+     * @throws IllegalArgumentException if the keys are out of order
+     */
+    public static IntAVLTree fromSorted (int[] sorted) {
+        int[] distinct = new int[sorted.length];
+        int n = 0;
+        for (int key : sorted) {
+            if (n > 0 && distinct[n - 1] > key) {
+                throw new IllegalArgumentException("keys are not sorted: " + key + " follows "
+                    + distinct[n - 1]);
+            } else if (n == 0 || distinct[n - 1] != key) {
+                distinct[n++] = key;
+            }
+        }
+        IntAVLTree tree = new IntAVLTree(n);
+        tree.root = tree.build(distinct, 0, n);
+        return tree;
+    }
+
+    /** Returns the keys of this tree in order. */
+    public int[] toArray () {
+        int[] out = new int[size()];
+        int[] stack = new int[height()];
+        int top = 0;
+        int n = 0;
+        int cur = root;
+        while (cur != NIL || top > 0) {
+            while (cur != NIL) {
+                stack[top++] = cur;
+                cur = left[cur];
+            }
+            cur = stack[--top];
+            out[n++] = keys[cur];
+            cur = right[cur];
+        }
+        return out;
+    }
+
+    /**
+     * Adds a batch of keys by sorting it, merging it with the keys already
+     * in the tree and rebuilding the tree into fresh arrays.
+     */
+    public void addAll (int[] batch) {
+        if ((long) batch.length * (height() + 1) < size()) {
+            for (int key : batch) {
+                insert(key);
+            }
+            return;
+        }
+        int[] incoming = batch.clone();
+        Arrays.sort(incoming);
+        int[] existing = toArray();
+        int[] merged = new int[existing.length + incoming.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < existing.length || j < incoming.length) {
+            int key = j == incoming.length || i < existing.length && existing[i] <= incoming[j]
+                ? existing[i++] : incoming[j++];
+            if (n == 0 || merged[n - 1] != key) {
+                merged[n++] = key;
+            }
+        }
+        IntAVLTree rebuilt = fromSorted(Arrays.copyOf(merged, n));
+        keys = rebuilt.keys;
+        left = rebuilt.left;
+        right = rebuilt.right;
+        heights = rebuilt.heights;
+        counts = rebuilt.counts;
+        root = rebuilt.root;
+        next = rebuilt.next;
+        free = rebuilt.free;
+    }
+
+    private int validateH (int node, long lo, long hi) {
+        if (node == NIL) {
+            return 0;
+        }
+        if (keys[node] <= lo || keys[node] >= hi) {
+            throw new IllegalStateException("key " + keys[node] + " is out of order");
+        }
+        int lh = validateH(left[node], lo, keys[node]);
+        int rh = validateH(right[node], keys[node], hi);
+        if (heights[node] != 1 + Math.max(lh, rh)
+                || counts[node] != 1 + counts[left[node]] + counts[right[node]]) {
+            throw new IllegalStateException("stale height or count at key " + keys[node]);
+        }
+        if (Math.abs(lh - rh) > 1) {
+            throw new IllegalStateException("unbalanced at key " + keys[node]);
+        }
+        return heights[node];
+    }
+
+    /**
+     * Throws an IllegalStateException if this tree violates the BST ordering
+     * or the AVL balance invariant, or the sentinel has been written to.
+     */
+    public void validate () {
+        if (heights[NIL] != 0 || counts[NIL] != 0) {
+            throw new IllegalStateException("sentinel was modified");
+        }
+        validateH(root, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /** The number of node slots allocated, in use or not. */
+    public int capacity () { return keys.length - 1; }
+
+    /** Runs random inserts and deletes against a TreeSet. */
+    private static void checkAgainstTreeSet () {
+        Random rand = new Random(207);
+        IntAVLTree tree = new IntAVLTree();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 200000; i++) {
+            int key = rand.nextInt(50000);
+            if (rand.nextInt(5) < 2) {
+                tree.delete(key);
+                expected.remove(key);
+            } else {
+                tree.insert(key);
+                expected.add(key);
+            }
+            if (i % 9973 == 0) {
+                tree.validate();
+            }
+        }
+        tree.validate();
+        int[] keys = tree.toArray();
+        int k = 0;
+        for (int key : expected) {
+            if (keys[k] != key || tree.select(k) != key || tree.rank(key) != k) {
+                throw new IllegalStateException("wrong key at rank " + k);
+            }
+            k += 1;
+        }
+        if (k != tree.size() || tree.countInRange(1000, 2000) != expected.subSet(1000, 2000).size()) {
+            throw new IllegalStateException("wrong size or range count");
+        }
+        // N.B., freed slots are reused, so capacity tracks the peak size, not the insert count
+        System.out.printf("Matches TreeSet: %d keys, height %d, %d slots%n",
+            tree.size(), tree.height(), tree.capacity());
+    }
+
+    private static long usedBytes () {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Inserts n random keys into an IntAVLTree and an AVLTree&lt;Integer&gt;
+     * and reports the time and the heap each takes.
+     */
+    private static void compareWithAVLTree (int n) {
+        int[] keys = new Random(207).ints(n).toArray();
+        long base = usedBytes();
+        long start = System.nanoTime();
+        IntAVLTree ints = new IntAVLTree();
+        for (int key : keys) {
+            ints.insert(key);
+        }
+        long intNanos = System.nanoTime() - start;
+        long intBytes = usedBytes() - base;
+        int size = ints.size();
+        ints = null;
+        base = usedBytes();
+        start = System.nanoTime();
+        AVLTree<Integer> boxed = new AVLTree<>();
+        for (int key : keys) {
+            boxed.insert(key);
+        }
+        long boxedNanos = System.nanoTime() - start;
+        long boxedBytes = usedBytes() - base;
+        if (boxed.size() != size) {
+            throw new IllegalStateException("trees disagree on size");
+        }
+        System.out.printf("%-18s %8s %14s%n", n + " random keys", "ms", "bytes/key");
+        System.out.printf("%-18s %8d %14.1f%n", "IntAVLTree", intNanos / 1000000,
+            (double) intBytes / size);
+        System.out.printf("%-18s %8d %14.1f%n", "AVLTree<Integer>", boxedNanos / 1000000,
+            (double) boxedBytes / size);
+    }
+
+    public static void main (String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        checkAgainstTreeSet();
+        compareWithAVLTree(n);
+    }
+}
@@ -0,0 +1,377 @@
+package edu.grinnell.csc207.balancing;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A persistent AVL tree: its nodes are never modified once built. Insert
+ * and delete copy only the nodes on the path from the root to the change,
+ * about log n of them, rebalancing the copies on the way back up, and share
+ * every untouched subtree with the tree before the change.
+ *
+ * <p>The current root is published through an {@link AtomicReference}, so
+ * {@link #snapshot()} is a single read: a snapshot is a consistent view of
+ * the set as of one moment, which readers can query and iterate for as
+ * long as they like, without locks, while writers keep installing new
+ * roots. A writer builds its new root off to the side and installs it with
+ * compare-and-set, retrying against the newer root if another writer got
+ * there first.
+ */
+public class PersistentAVLTree <T extends Comparable<? super T>> {
+    private static final class Node <T> {
+        public final T data;
+        public final Node<T> left;
+        public final Node<T> right;
+        public final int height;
+        public final int count;
+
+        private Node (T data, Node<T> left, Node<T> right) {
+            this.data = data;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(heightOf(left), heightOf(right));
+            this.count = 1 + countOf(left) + countOf(right);
+        }
+    }
+
+    private static int heightOf (Node<?> root) {
+        return root == null ? 0 : root.height;
+    }
+
+    private static int countOf (Node<?> root) {
+        return root == null ? 0 : root.count;
+    }
+
+    /**
+     * An immutable view of the tree as of the moment it was taken.
+     */
+    public static final class Snapshot <T> implements Iterable<T> {
+        private final Node<T> root;
+        private final Comparator<? super T> comparator;
+
+        private Snapshot (Node<T> root, Comparator<? super T> comparator) {
+            this.root = root;
+            this.comparator = comparator;
+        }
+
+        public int size () { return countOf(root); }
+
+        public int height () { return heightOf(root); }
+
+        public boolean contains (T data) {
+            Node<T> cur = root;
+            while (cur != null) {
+                int c = comparator.compare(data, cur.data);
+                if (c < 0) {
+                    cur = cur.left;
+                } else if (c > 0) {
+                    cur = cur.right;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the k-th smallest key of this snapshot, counting from 0.
+         *
+         * @throws IndexOutOfBoundsException if k is not in [0, size())
+         */
+        public T select (int k) {
+            if (k < 0 || k >= size()) {
+                throw new IndexOutOfBoundsException("no key of rank " + k + " among " + size());
+            }
+            Node<T> cur = root;
+            while (true) {
+                int leftCount = countOf(cur.left);
+                if (k < leftCount) {
+                    cur = cur.left;
+                } else if (k > leftCount) {
+                    k -= leftCount + 1;
+                    cur = cur.right;
+                } else {
+                    return cur.data;
+                }
+            }
+        }
+
+        /** Iterates over the keys of this snapshot in order. */
+        @Override
+        public Iterator<T> iterator () {
+            return new Iterator<T>() {
+                private final ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+                private Node<T> cur = root;
+
+                @Override
+                public boolean hasNext () { return cur != null || !stack.isEmpty(); }
+
+                @Override
+                public T next () {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    while (cur != null) {
+                        stack.push(cur);
+                        cur = cur.left;
+                    }
+                    Node<T> node = stack.pop();
+                    cur = node.right;
+                    return node.data;
+                }
+            };
+        }
+
+        private int validateH (Node<T> root, T lo, T hi) {
+            if (root == null) {
+                return 0;
+            }
+            if (lo != null && comparator.compare(root.data, lo) <= 0
+                    || hi != null && comparator.compare(root.data, hi) >= 0) {
+                throw new IllegalStateException("key " + root.data + " is out of order");
+            }
+            int lh = validateH(root.left, lo, root.data);
+            int rh = validateH(root.right, root.data, hi);
+            if (Math.abs(lh - rh) > 1 || root.height != 1 + Math.max(lh, rh)
+                    || root.count != 1 + countOf(root.left) + countOf(root.right)) {
+                throw new IllegalStateException("unbalanced or stale at key " + root.data);
+            }
+            return root.height;
+        }
+
+        /**
+         * Throws an IllegalStateException if this snapshot violates the BST
+         * ordering or the AVL balance invariant.
+         */
+        public void validate () { validateH(root, null, null); }
+    }
+
+    private final AtomicReference<Node<T>> root;
+    private final Comparator<? super T> comparator;
+
+    public PersistentAVLTree () { this(null); }
+
+    /**
+     * Creates a tree ordering its keys with the given comparator, or by their
+     * natural ordering if it is null.
+     */
+    public PersistentAVLTree (Comparator<? super T> comparator) {
+        this.root = new AtomicReference<>(null);
+        this.comparator = comparator == null ? Comparator.naturalOrder() : comparator;
+    }
+
+    /** Returns a view of the tree as it is now, in constant time. */
+    public Snapshot<T> snapshot () { return new Snapshot<>(root.get(), comparator); }
+
+    public int size () { return countOf(root.get()); }
+
+    public boolean contains (T data) { return snapshot().contains(data); }
+
+    //
+    // The helpers below never modify a node: each returns the root of a new
+    // subtree, built from fresh copies of the nodes along one path and the
+    // untouched subtrees of the old one.
+    //
+
+    private static <T> Node<T> rotateRight (Node<T> root) {
+        Node<T> l = root.left;
+        return new Node<>(l.data, l.left, new Node<>(root.data, l.right, root.right));
+    }
+
+    private static <T> Node<T> rotateLeft (Node<T> root) {
+        Node<T> r = root.right;
+        return new Node<>(r.data, new Node<>(root.data, root.left, r.left), r.right);
+    }
+
+    private static <T> int balanceFactor (Node<T> root) {
+        return heightOf(root.left) - heightOf(root.right);
+    }
+
+    /**
+     * Builds a node from a key and two balanced subtrees whose heights differ
+     * by at most two, rotating if needed to keep it balanced.
+     */
+    private static <T> Node<T> balanced (T data, Node<T> left, Node<T> right) {
+        int bf = heightOf(left) - heightOf(right);
+        if (bf > 1) {
+            if (balanceFactor(left) < 0) {
+                left = rotateLeft(left);
+            }
+            return rotateRight(new Node<>(data, left, right));
+        } else if (bf < -1) {
+            if (balanceFactor(right) > 0) {
+                right = rotateRight(right);
+            }
+            return rotateLeft(new Node<>(data, left, right));
+        } else {
+            return new Node<>(data, left, right);
+        }
+    }
+
+    private Node<T> insertH (T data, Node<T> root) {
+        if (root == null) {
+            return new Node<>(data, null, null);
+        }
+        int c = comparator.compare(data, root.data);
+        if (c < 0) {
+            Node<T> left = insertH(data, root.left);
+            return left == root.left ? root : balanced(root.data, left, root.right);
+        } else if (c > 0) {
+            Node<T> right = insertH(data, root.right);
+            return right == root.right ? root : balanced(root.data, root.left, right);
+        } else {
+            return root;
+        }
+    }
+
+    /** Returns the subtree root without its largest key. */
+    private static <T> Node<T> deleteMax (Node<T> root) {
+        if (root.right == null) {
+            return root.left;
+        }
+        return balanced(root.data, root.left, deleteMax(root.right));
+    }
+
+    private static <T> T max (Node<T> root) {
+        while (root.right != null) {
+            root = root.right;
+        }
+        return root.data;
+    }
+
+    private Node<T> deleteH (T data, Node<T> root) {
+        if (root == null) {
+            return null;
+        }
+        int c = comparator.compare(data, root.data);
+        if (c < 0) {
+            Node<T> left = deleteH(data, root.left);
+            return left == root.left ? root : balanced(root.data, left, root.right);
+        } else if (c > 0) {
+            Node<T> right = deleteH(data, root.right);
+            return right == root.right ? root : balanced(root.data, root.left, right);
+        } else if (root.left == null) {
+            return root.right;
+        } else if (root.right == null) {
+            return root.left;
+        } else {
+            return balanced(max(root.left), deleteMax(root.left), root.right);
+        }
+    }
+
+    public void insert (T data) {
+        while (true) {
+            Node<T> old = root.get();
+            Node<T> updated = insertH(data, old);
+            // N.B., an insert that changes nothing shares the old root outright
+            if (updated == old || root.compareAndSet(old, updated)) {
+                return;
+            }
+        }
+    }
+
+    public void delete (T data) {
+        while (true) {
+            Node<T> old = root.get();
+            Node<T> updated = deleteH(data, old);
+            if (updated == old || root.compareAndSet(old, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Has one writer mutate the tree while several readers repeatedly take
+     * snapshots and check that each iterates in order over exactly as many
+     * keys as it claims to hold.
+     */
+    private static void checkSnapshots (int readers, long millis) throws InterruptedException {
+        PersistentAVLTree<Integer> tree = new PersistentAVLTree<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong writes = new AtomicLong();
+        AtomicLong snapshots = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            Random rand = new Random(207);
+            while (running.get()) {
+                int key = rand.nextInt(100000);
+                if (rand.nextInt(3) == 0) {
+                    tree.delete(key);
+                } else {
+                    tree.insert(key);
+                }
+                writes.incrementAndGet();
+            }
+        });
+        Thread[] threads = new Thread[readers];
+        for (int i = 0; i < readers; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        Snapshot<Integer> snap = tree.snapshot();
+                        int seen = 0;
+                        Integer prev = null;
+                        for (int key : snap) {
+                            if (prev != null && prev >= key) {
+                                throw new IllegalStateException("snapshot out of order");
+                            }
+                            prev = key;
+                            seen += 1;
+                        }
+                        if (seen != snap.size()) {
+                            throw new IllegalStateException("snapshot changed while iterated");
+                        }
+                        snap.validate();
+                        snapshots.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        writer.start();
+        for (Thread t : threads) {
+            t.start();
+        }
+        Thread.sleep(millis);
+        running.set(false);
+        writer.join();
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("a reader failed", failure.get());
+        }
+        System.out.printf("%d writes while %d readers checked %d snapshots; final size %d%n",
+            writes.get(), readers, snapshots.get(), tree.size());
+    }
+
+    public static void main (String[] args) throws InterruptedException {
+        PersistentAVLTree<Integer> tree = new PersistentAVLTree<>();
+        for (int i = 0; i < 7; i++) {
+            tree.insert(i);
+        }
+        Snapshot<Integer> before = tree.snapshot();
+        tree.delete(3);
+        tree.insert(10);
+        Snapshot<Integer> after = tree.snapshot();
+        System.out.print("Before:");
+        for (int key : before) {
+            System.out.print(" " + key);
+        }
+        System.out.println();
+        System.out.print("After: ");
+        for (int key : after) {
+            System.out.print(" " + key);
+        }
+        System.out.println();
+        System.out.println();
+        checkSnapshots(4, 2000);
+    }
+}